@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.component;
+
+/**
+ * A component that can get the keyboard focus of the window, like an edit field. While a focusable component
+ * has the focus, the FocusManager of the window will give it the key events it consumes directly, rather
+ * than passing them through the entire component tree.
+ *
+ * Focusable components should call setFocused on the FocusManager of the window when they get the focus and
+ * clearFocus when they lose it.
+ */
+public interface FocusableComponent extends GuiComponent {
+
+	/**
+	 * Gives the focus to this component.
+	 */
+	void setFocus();
+
+	/**
+	 * Takes the focus away from this component.
+	 */
+	void loseFocus();
+
+	/**
+	 * Determines whether this component consumes the key with the given key code while it has the focus. If
+	 * it does, key presses and releases of that key will only be given to this component. If it doesn't, they
+	 * will be passed through the component tree like usual.
+	 * @param keyCode The key code of the key
+	 * @return true if this component consumes the key, false otherwise
+	 */
+	default boolean consumesKey(int keyCode) {
+		return true;
+	}
+
+	/**
+	 * Determines whether this component consumes the given typed character while it has the focus. If it does,
+	 * the character will only be given to this component. If it doesn't, the character will be passed through
+	 * the component tree like usual.
+	 * @param character The typed character
+	 * @return true if this component consumes the character, false otherwise
+	 */
+	default boolean consumesKey(char character) {
+		return true;
+	}
+}
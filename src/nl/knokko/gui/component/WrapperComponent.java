@@ -34,6 +34,7 @@ import nl.knokko.gui.testing.CheckableComponent;
 import nl.knokko.gui.testing.EditableComponent;
 import nl.knokko.gui.testing.ImageShowingComponent;
 import nl.knokko.gui.testing.TextShowingComponent;
+import nl.knokko.gui.window.FocusManager;
 
 public class WrapperComponent<C extends GuiComponent> extends AbstractGuiComponent 
 implements TextShowingComponent, ImageShowingComponent, CheckableComponent, EditableComponent {
@@ -51,11 +52,20 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
     }
     
     public void setComponent(C component){
+        if(state != null){
+            FocusManager focusManager = state.getWindow().getFocusManager();
+            if(this.component != null)
+                focusManager.clearFocusWithin(this.component);
+            focusManager.invalidateFocusOrder();
+        }
         this.component = component;
         if(component != null && state != null){
             component.setState(state);
+            state.getWindow().markLayoutChange();
             component.init();
         }
+        if(state != null)
+            state.invalidate();
     }
     
     public C getComponent(){
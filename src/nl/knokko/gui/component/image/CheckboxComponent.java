@@ -60,11 +60,12 @@ public class CheckboxComponent extends AbstractGuiComponent implements Checkable
 	@Override
 	public void click(float x, float y, int button) {
 		checked = !checked;
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	@Override
 	public void render(GuiRenderer renderer) {
+		renderer.trackHover(state);
 		if (state.isMouseOver()) {
 			if (checked)
 				renderer.renderTexture(checkedHoverImage, 0, 0, 1, 1);
@@ -84,17 +85,17 @@ public class CheckboxComponent extends AbstractGuiComponent implements Checkable
 	
 	public void check() {
 		checked = true;
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	public void uncheck() {
 		checked = false;
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	public void check(boolean value) {
 		checked = value;
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 
 	@Override
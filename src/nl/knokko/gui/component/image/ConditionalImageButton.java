@@ -30,15 +30,28 @@ import java.util.Collections;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.util.Condition;
+import nl.knokko.gui.util.ConditionTracker;
 
 public class ConditionalImageButton extends ImageButton {
 	
 	protected Condition condition;
 
+	/**
+	 * Tracks the condition, to invalidate this component when it changes
+	 */
+	protected final ConditionTracker conditionTracker = new ConditionTracker();
+
 	public ConditionalImageButton(GuiTexture texture, GuiTexture hoverTexture, Runnable clickAction, Condition condition) {
 		super(texture, hoverTexture, clickAction);
 		this.condition = condition;
 	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (conditionTracker.changed(condition))
+			state.invalidate();
+	}
 	
 	@Override
 	public void render(GuiRenderer renderer) {
@@ -30,15 +30,28 @@ import java.util.Collections;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.util.Condition;
+import nl.knokko.gui.util.ConditionTracker;
 
 public class ConditionalImageComponent extends SimpleImageComponent {
     
     protected Condition visible;
+
+    /**
+     * Tracks the condition, to invalidate this component when it changes
+     */
+    protected final ConditionTracker conditionTracker = new ConditionTracker();
     
     public ConditionalImageComponent(GuiTexture texture, Condition isVisible) {
         super(texture);
         visible = isVisible;
     }
+
+    @Override
+    public void update() {
+        super.update();
+        if (conditionTracker.changed(visible))
+            state.invalidate();
+    }
     
     @Override
     public void render(GuiRenderer renderer){
@@ -42,12 +42,13 @@ public class ImageButton extends SimpleImageComponent {
 	public void click(float x, float y, int button) {
 		if(button == MouseCode.BUTTON_LEFT) {
 			clickAction.run();
-			state.getWindow().markChange();
+			state.invalidate();
 		}
 	}
 	
 	@Override
 	public void render(GuiRenderer renderer) {
+		renderer.trackHover(state);
 		if(state.isMouseOver())
 			renderer.renderTexture(hoverTexture, 0, 0, 1, 1);
 		else
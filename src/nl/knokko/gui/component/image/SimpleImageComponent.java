@@ -48,6 +48,15 @@ public class SimpleImageComponent extends AbstractGuiComponent implements ImageS
 		this.texture = texture;
 	}
 
+	public GuiTexture getTexture() {
+		return texture;
+	}
+	
+	public void setTexture(GuiTexture newTexture) {
+		texture = newTexture;
+		state.invalidate();
+	}
+
 	@Override
 	public void update() {
 	}
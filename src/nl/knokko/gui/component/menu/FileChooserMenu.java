@@ -27,8 +27,14 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import javax.swing.Icon;
 import javax.swing.filechooser.FileSystemView;
@@ -43,6 +49,7 @@ import nl.knokko.gui.component.text.EagerTextEditField;
 import nl.knokko.gui.component.text.TextButton;
 import nl.knokko.gui.component.text.dynamic.DynamicTextButton;
 import nl.knokko.gui.component.text.dynamic.DynamicTextComponent;
+import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
 public class FileChooserMenu extends GuiMenu {
@@ -124,7 +131,7 @@ public class FileChooserMenu extends GuiMenu {
 		directory = newDirectory;
 		parentDirectory = directory.getParentFile();
 		list.setDirectory();
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	private String filterText = "";
@@ -138,7 +145,40 @@ public class FileChooserMenu extends GuiMenu {
 	public static final Properties FOLDER_NAME_HOVER_PROPERTIES = Properties.createLabel(new Color(50, 50, 50),
 			new Color(150, 150, 255), 512, 128);
 
-	protected class FileList extends GuiMenu {
+	/**
+	 * The extensions of files whose system icon can be different for every file, like executables and
+	 * shortcuts. The icons of these files (and of directories) can't be shared between files.
+	 */
+	protected static final Set<String> PER_FILE_ICON_EXTENSIONS = new HashSet<String>(Arrays.asList(
+			".exe", ".lnk", ".url", ".ico", ".scr", ".cpl", ".msc", ".appref-ms"));
+
+	protected class FileList extends VirtualListMenu<FileRow> {
+		
+		protected final List<File> files;
+		
+		/**
+		 * The icon textures, by file extension. The icons of files with the same extension are the same (except
+		 * for the extensions in PER_FILE_ICON_EXTENSIONS), so this avoids creating an icon texture for every
+		 * file.
+		 */
+		protected final Map<String,GuiTexture> icons;
+		
+		/**
+		 * The icon textures of the directories and the files with a per-file icon in the current directory
+		 */
+		protected final Map<File,GuiTexture> fileIcons;
+		
+		/**
+		 * The directory of the files in fileIcons
+		 */
+		private File fileIconDirectory;
+		
+		protected FileList() {
+			super(0.1f);
+			files = new ArrayList<File>();
+			icons = new HashMap<String,GuiTexture>();
+			fileIcons = new HashMap<File,GuiTexture>();
+		}
 
 		@Override
 		protected void addComponents() {
@@ -149,51 +189,161 @@ public class FileChooserMenu extends GuiMenu {
 		public GuiColor getBackgroundColor() {
 			return listBackground;
 		}
+		
+		@Override
+		protected int getRowCount() {
+			return files.size();
+		}
+		
+		@Override
+		protected FileRow createRow() {
+			return new FileRow();
+		}
+		
+		@Override
+		protected void bindRow(FileRow row, int index) {
+			row.setFile(files.get(index));
+		}
 
 		protected void setDirectory() {
-			clearComponents();
-			File[] files = directory.listFiles();
-			Arrays.sort(files, (a, b) -> {
-				if (a.isHidden() && !b.isHidden())
-					return 1;
-				if (!a.isHidden() && b.isHidden())
-					return -1;
-				return a.getName().toLowerCase(Locale.ROOT)
-					.compareTo(b.getName().toLowerCase(Locale.ROOT));
-			});
-			int index = 0;
-			for (File file : files) {
-				if ((file.isDirectory() || filter.accept(file)) 
-						&& file.getName().toLowerCase(Locale.ROOT)
-						.contains(filterText.toLowerCase(Locale.ROOT))) {
-
-					// TODO Reuse buffered images containing icons
-					Icon icon = FileSystemView.getFileSystemView().getSystemIcon(file);
-					BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(),
-							BufferedImage.TYPE_INT_ARGB);
-					Graphics2D g = image.createGraphics();
-					icon.paintIcon(null, g, 0, 0);
-					g.dispose();
-					addComponent(new SimpleImageComponent(state.getWindow().getTextureLoader().loadTexture(image)), 0f,
-							0.9f - index * 0.1f, 0.1f, 1f - index * 0.1f);
-					if (file.isDirectory()) {
-						addComponent(new DynamicTextButton(file.getName(), FILE_NAME_PROPERTIES,
-								FILE_NAME_HOVER_PROPERTIES, () -> {
-									FileChooserMenu.this.setDirectory(file);
-								}), 0.15f, 0.9f - index * 0.1f, Math.min(1f, 0.15f + file.getName().length() * 0.02f),
-								1f - index * 0.1f);
-					} else {
-						addComponent(new DynamicTextButton(file.getName(), FOLDER_NAME_PROPERTIES,
-								FOLDER_NAME_HOVER_PROPERTIES, () -> {
-									selectedFile = file;
-									state.getWindow().markChange();
-								}), 0.15f, 0.9f - index * 0.1f, Math.min(1f, 0.15f + file.getName().length() * 0.02f),
-								1f - index * 0.1f);
+			files.clear();
+			if (!directory.equals(fileIconDirectory)) {
+				fileIcons.clear();
+				fileIconDirectory = directory;
+			}
+			File[] allFiles = directory.listFiles();
+			if (allFiles != null) {
+				
+				// Compute the sort keys only once per file because isHidden() can be expensive
+				String lowerFilter = filterText.toLowerCase(Locale.ROOT);
+				List<SortEntry> entries = new ArrayList<SortEntry>(allFiles.length);
+				for (File file : allFiles) {
+					String lowerName = file.getName().toLowerCase(Locale.ROOT);
+					if (lowerName.contains(lowerFilter) && (file.isDirectory() || filter.accept(file))) {
+						entries.add(new SortEntry(file, file.isHidden(), lowerName));
 					}
-					index++;
 				}
+				entries.sort((a, b) -> {
+					if (a.hidden && !b.hidden)
+						return 1;
+					if (!a.hidden && b.hidden)
+						return -1;
+					return a.lowerName.compareTo(b.lowerName);
+				});
+				for (SortEntry entry : entries)
+					files.add(entry.file);
 			}
 			this.screenCenterY = 0f;
+			refreshRows();
+		}
+		
+		protected GuiTexture getIcon(File file) {
+			if (file.isDirectory())
+				return getIcon(fileIcons, file, file);
+			String name = file.getName();
+			int dotIndex = name.lastIndexOf('.');
+			String extension = dotIndex == -1 ? "" : name.substring(dotIndex).toLowerCase(Locale.ROOT);
+			if (PER_FILE_ICON_EXTENSIONS.contains(extension))
+				return getIcon(fileIcons, file, file);
+			return getIcon(icons, extension, file);
+		}
+		
+		private <K> GuiTexture getIcon(Map<K,GuiTexture> cache, K key, File file) {
+			GuiTexture icon = cache.get(key);
+			if (icon == null && !cache.containsKey(key)) {
+				icon = createIcon(file);
+				cache.put(key, icon);
+			}
+			return icon;
+		}
+		
+		protected GuiTexture createIcon(File file) {
+			Icon icon = FileSystemView.getFileSystemView().getSystemIcon(file);
+			if (icon == null || icon.getIconWidth() <= 0 || icon.getIconHeight() <= 0)
+				return null;
+			BufferedImage image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			icon.paintIcon(null, g, 0, 0);
+			g.dispose();
+			return state.getWindow().getTextureLoader().loadTexture(image);
+		}
+	}
+	
+	private static class SortEntry {
+		
+		final File file;
+		final boolean hidden;
+		final String lowerName;
+		
+		SortEntry(File file, boolean hidden, String lowerName) {
+			this.file = file;
+			this.hidden = hidden;
+			this.lowerName = lowerName;
+		}
+	}
+	
+	/**
+	 * The row component of the file list. It shows the icon and the name of a file and will be recycled to
+	 * show other files when the user scrolls through the list.
+	 */
+	protected class FileRow extends GuiMenu {
+		
+		protected File file;
+		protected boolean showsDirectory = true;
+		
+		protected SimpleImageComponent icon;
+		protected DynamicTextButton name;
+		protected SubComponent nameComponent;
+		
+		@Override
+		protected void addComponents() {
+			icon = new SimpleImageComponent();
+			addComponent(icon, 0f, 0f, 0.1f, 1f);
+			name = new DynamicTextButton("", FILE_NAME_PROPERTIES, FILE_NAME_HOVER_PROPERTIES, () -> {
+				if (file.isDirectory()) {
+					FileChooserMenu.this.setDirectory(file);
+				} else {
+					selectedFile = file;
+					FileChooserMenu.this.state.invalidate();
+				}
+			});
+			nameComponent = new SubComponent(name, 0.15f, 0f, 0.15f, 1f);
+			addComponent(nameComponent);
+		}
+		
+		protected void setFile(File newFile) {
+			file = newFile;
+			icon.setTexture(list.getIcon(file));
+			String fileName = file.getName();
+			boolean isDirectory = file.isDirectory();
+			if (isDirectory != showsDirectory) {
+				if (isDirectory) {
+					name.setProperties(FILE_NAME_PROPERTIES);
+					name.setHoverProps(FILE_NAME_HOVER_PROPERTIES);
+				} else {
+					name.setProperties(FOLDER_NAME_PROPERTIES);
+					name.setHoverProps(FOLDER_NAME_HOVER_PROPERTIES);
+				}
+				showsDirectory = isDirectory;
+			}
+			name.setText(fileName);
+			nameComponent.setBounds(0.15f, 0f, Math.min(1f, 0.15f + fileName.length() * 0.02f), 1f);
+		}
+		
+		@Override
+		public GuiColor getBackgroundColor() {
+			return null;
+		}
+		
+		@Override
+		protected boolean allowScrolling() {
+			return false;
+		}
+		
+		@Override
+		protected boolean allowArrowMoving() {
+			return false;
 		}
 	}
 
@@ -26,8 +26,11 @@ package nl.knokko.gui.component.menu;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import nl.knokko.gui.color.GuiColor;
 import nl.knokko.gui.color.SimpleGuiColor;
@@ -38,17 +41,51 @@ import nl.knokko.gui.component.state.RelativeComponentState;
 import nl.knokko.gui.component.text.TextEditField;
 import nl.knokko.gui.keycode.KeyCode;
 import nl.knokko.gui.render.GuiRenderer;
+import nl.knokko.gui.render.RenderCache;
 import nl.knokko.gui.testing.CheckableComponent;
 import nl.knokko.gui.testing.EditableComponent;
 import nl.knokko.gui.testing.ImageShowingComponent;
 import nl.knokko.gui.testing.TextShowingComponent;
+import nl.knokko.gui.window.FocusManager;
 import nl.knokko.gui.window.input.WindowInput;
 
 public abstract class GuiMenu extends AbstractGuiComponent 
 implements TextShowingComponent, ImageShowingComponent, CheckableComponent, EditableComponent {
 	
+	/**
+	 * The size of the cells of the spatial grid that is used to find the components at a given point
+	 */
+	private static final float GRID_CELL_SIZE = 0.1f;
+	
 	private List<SubComponent> components;
 	
+	/**
+	 * An array with the same content as components, or null if components has been modified since the
+	 * last time it was created. The event methods iterate over this array, so components can be added or
+	 * removed while an event is being handled without copying the list for every event.
+	 */
+	private SubComponent[] componentSnapshot;
+	
+	private static final SubComponent[] NO_COMPONENTS = {};
+	
+	/**
+	 * Keeps track of the bounds of the components, so that the components at a given point can be found
+	 * quickly.
+	 */
+	private final SpatialGrid<SubComponent> grid;
+	
+	/**
+	 * The components that were clicked (or notified that they became active) and haven't been clicked out
+	 * yet. Only these components will receive clickOut when the user clicks somewhere else.
+	 */
+	private final Set<SubComponent> clickTargets;
+	
+	/**
+	 * The order value for the next component that will be added. Components that were added earlier have
+	 * priority in getComponentAt.
+	 */
+	private long nextOrder;
+	
 	/**
 	 * The screenCenterX determines what X-coordinate will be rendered in the middle of the screen.
 	 */
@@ -59,6 +96,19 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 	 */
 	protected float screenCenterY;
 	
+	/**
+	 * The screen center at the last call to screenCenterChanged(), used to detect screen center changes
+	 * by subclasses that didn't call screenCenterChanged() themselves.
+	 */
+	private float knownCenterX;
+	private float knownCenterY;
+	
+	/**
+	 * Increased whenever the screen center changes, to invalidate the cached transforms of the states of
+	 * the components of this menu
+	 */
+	private long centerVersion;
+	
 	protected float minCenterX;
 	protected float minCenterY;
 	protected float maxCenterX;
@@ -72,6 +122,8 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 	public GuiMenu(){
 		super();
 		components = new ArrayList<SubComponent>();
+		grid = new SpatialGrid<SubComponent>(GRID_CELL_SIZE);
+		clickTargets = new LinkedHashSet<SubComponent>();
 		scrollSpeed = 1f;
 	}
 	
@@ -82,10 +134,7 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
     @Override
 	public void init(){
     	if(!didInit) {
-    		directRefresh = false;
-    		addComponents();
-    		refreshMovement();
-    		directRefresh = true;
+    		addComponentBatch(this::addComponents);
     		didInit = true;
     	}
     	
@@ -111,27 +160,28 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 
     @Override
 	public void update() {
-    	List<SubComponent> componentsToUpdate = new ArrayList<>(components);
-		for(SubComponent component : componentsToUpdate)
-			if(component.isActive())
+		for(SubComponent component : getComponentSnapshot())
+			if(component.isActive() && component.didInit)
 				component.getComponent().update();
 		if(allowArrowMoving()){
+			float prevCenterX = screenCenterX;
+			float prevCenterY = screenCenterY;
 			WindowInput input = state.getWindow().getInput();
 			if(input.isKeyDown(KeyCode.KEY_LEFT)) {
 				screenCenterX -= 0.005f;
-				state.getWindow().markChange();
+				state.invalidate();
 			}
 			if(input.isKeyDown(KeyCode.KEY_RIGHT)) {
 				screenCenterX += 0.005f;
-				state.getWindow().markChange();
+				state.invalidate();
 			}
 			if(input.isKeyDown(KeyCode.KEY_UP)) {
 				screenCenterY += 0.005f;
-				state.getWindow().markChange();
+				state.invalidate();
 			}
 			if(input.isKeyDown(KeyCode.KEY_DOWN)) {
 				screenCenterY -= 0.005f;
-				state.getWindow().markChange();
+				state.invalidate();
 			}
 			if(screenCenterX < minCenterX)
 				screenCenterX = minCenterX;
@@ -141,7 +191,10 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 				screenCenterY = minCenterY;
 			if(screenCenterY > maxCenterY)
 				screenCenterY = maxCenterY;
+			if(screenCenterX != prevCenterX || screenCenterY != prevCenterY)
+				screenCenterChanged();
 		}
+		checkScreenCenter();
 	}
 
     @Override
@@ -149,32 +202,55 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
         GuiColor background = getBackgroundColor();
         if(background != null)
             renderer.clear(background);
-		for(SubComponent component : components)
+        checkScreenCenter();
+        if(initLazily())
+        	initVisibleComponents();
+        boolean retained = state.getWindow().isRetainedRendering();
+        boolean checkHover = !state.getWindow().isHoverTracking();
+        float mouseX = state.getMouseX() + screenCenterX;
+        float mouseY = state.getMouseY() + screenCenterY;
+		for(SubComponent component : getComponentSnapshot())
 			if(component.isActive())
-				component.render(renderer);
+				component.render(renderer, retained, checkHover, mouseX, mouseY);
 	}
 
     @Override
 	public void click(float x, float y, int button) {
 		x += screenCenterX;
 		y += screenCenterY;
-		List<SubComponent> componentsToClick = new ArrayList<>(components);
-		for(SubComponent component : componentsToClick)
-			if(component.isActive())
-				component.click(x, y, button);
+		List<SubComponent> componentsToClick = getComponentsAt(x, y);
+		
+		// Only the components that were clicked before need to know that they are clicked out
+		if(!clickTargets.isEmpty()){
+			List<SubComponent> componentsToClickOut = new ArrayList<>(clickTargets);
+			for(SubComponent component : componentsToClickOut){
+				if(!componentsToClick.contains(component)){
+					clickTargets.remove(component);
+					if(component.isActive() && component.didInit)
+						component.getComponent().clickOut(button);
+				}
+			}
+		}
+		for(SubComponent component : componentsToClick){
+			clickTargets.add(component);
+			component.click(x, y, button);
+		}
 	}
 
     @Override
 	public void clickOut(int button) {
-    	List<SubComponent> componentsToClick = new ArrayList<>(components);
+    	List<SubComponent> componentsToClick = new ArrayList<>(clickTargets);
+    	clickTargets.clear();
 		for(SubComponent component : componentsToClick)
-			if(component.isActive())
+			if(component.isActive() && component.didInit)
 				component.getComponent().clickOut(button);
 	}
 
     @Override
 	public boolean scroll(float amount) {
 		SubComponent component = getComponentAt(state.getMouseX() + screenCenterX, state.getMouseY() + screenCenterY);
+		if(component != null)
+			component.ensureInit();
 		if(component != null && component.getComponent().scroll(amount))
 			return true;
 		if(!allowScrolling())
@@ -186,7 +262,8 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 		if(screenCenterY > maxCenterY)
 			screenCenterY = maxCenterY;
 		if (screenCenterY != prevCenterY) {
-			state.getWindow().markChange();
+			screenCenterChanged();
+			state.invalidate();
 			return true;
 		} else {
 			return false;
@@ -195,25 +272,22 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 	
     @Override
 	public void keyPressed(int keyCode) {
-    	List<SubComponent> componentsToPress = new ArrayList<>(components);
-		for(SubComponent component : componentsToPress)
-			if(component.isActive())
+		for(SubComponent component : getComponentSnapshot())
+			if(component.isActive() && component.didInit)
 				component.component.keyPressed(keyCode);
 	}
 	
     @Override
 	public void keyPressed(char character) {
-    	List<SubComponent> componentsToPress = new ArrayList<>(components);
-		for(SubComponent component : componentsToPress)
-			if(component.isActive())
+		for(SubComponent component : getComponentSnapshot())
+			if(component.isActive() && component.didInit)
 				component.component.keyPressed(character);
 	}
 
     @Override
 	public void keyReleased(int keyCode) {
-    	List<SubComponent> componentsToRelease = new ArrayList<>(components);
-		for(SubComponent component : componentsToRelease)
-			if(component.isActive())
+		for(SubComponent component : getComponentSnapshot())
+			if(component.isActive() && component.didInit)
 				component.component.keyReleased(keyCode);
 	}
     
@@ -284,6 +358,42 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
     	return collection;
     }
 	
+	/**
+	 * Notifies the focus manager of the window that the editable components of this menu may have changed
+	 * or moved. This should be called when components are added, removed or moved, or when the screen center
+	 * changes.
+	 */
+	protected void invalidateFocusOrder(){
+		state.getWindow().getFocusManager().invalidateFocusOrder();
+	}
+	
+	/**
+	 * Notifies the window that the bounds of the components of this menu may have changed, so that the cached
+	 * transforms of their states (and the states of their descendants) will be computed again.
+	 */
+	private void markLayoutChange(){
+		state.getWindow().markLayoutChange();
+	}
+	
+	/**
+	 * Should be called after screenCenterX or screenCenterY has been changed. This will invalidate the focus
+	 * order and the cached transforms of the states of the components of this menu and their descendants.
+	 * Changes that are not reported will be detected during the next update or render, or when the state of
+	 * a component of this menu is used.
+	 */
+	protected void screenCenterChanged(){
+		knownCenterX = screenCenterX;
+		knownCenterY = screenCenterY;
+		centerVersion++;
+		markLayoutChange();
+		invalidateFocusOrder();
+	}
+	
+	private void checkScreenCenter(){
+		if(screenCenterX != knownCenterX || screenCenterY != knownCenterY)
+			screenCenterChanged();
+	}
+	
 	protected void refreshMovement(){
 		float minX = 0;
 		float minY = 0;
@@ -311,7 +421,7 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 		maxCenterY = maxY - 1;
 		if(maxCenterY < 0)
 			maxCenterY = 0;
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	public GuiColor getBackgroundColor(){
@@ -326,11 +436,70 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 		return true;
 	}
 	
+	/**
+	 * If this method returns true, the components of this menu won't be initialized until they become
+	 * visible for the first time (or until they are clicked or scrolled on). This can save a lot of time
+	 * for menus with many components that are outside the visible area. Components that haven't been
+	 * initialized yet won't receive updates or key events.
+	 * 
+	 * This method returns false by default.
+	 */
+	protected boolean initLazily(){
+		return false;
+	}
+	
+	/**
+	 * Initializes all components that are currently visible, but haven't been initialized yet. Their texture
+	 * requests will be batched, see addComponentBatch.
+	 */
+	protected void initVisibleComponents(){
+		boolean foundAny = false;
+		for(SubComponent component : components){
+			if(!component.didInit && component.isActive() && component.isVisible()){
+				foundAny = true;
+				break;
+			}
+		}
+		if(foundAny){
+			state.getWindow().getTextTextureCache().batch(() -> {
+				for(SubComponent component : getComponentSnapshot())
+					if(component.isActive() && component.isVisible())
+						component.ensureInit();
+			});
+		}
+	}
+	
+	/**
+	 * Runs the given adder, which should add components to this menu. The text textures that the new
+	 * components request during their init() will be created in parallel once the adder has finished,
+	 * see TextTextureCache.batch. The movement bounds of this menu will be refreshed only once, after all
+	 * components have been added.
+	 * 
+	 * The components of this menu are added this way in init(), so there is no need to use this method in
+	 * addComponents().
+	 * @param adder The function that adds the components
+	 */
+	public void addComponentBatch(Runnable adder) {
+		boolean prevDirectRefresh = directRefresh;
+		directRefresh = false;
+		try {
+			state.getWindow().getTextTextureCache().batch(adder);
+		} finally {
+			directRefresh = prevDirectRefresh;
+		}
+		refreshMovement();
+	}
+	
 	public void addComponent(SubComponent component){
 		components.add(component);
+		componentSnapshot = null;
+		invalidateFocusOrder();
+		markLayoutChange();
+		component.order = nextOrder++;
+		grid.add(component, component.minX, component.minY, component.maxX, component.maxY);
 		if(directRefresh)
 			refreshMovement();
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	public void addComponent(GuiComponent component, float minX, float minY, float maxX, float maxY){
@@ -338,10 +507,17 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 	}
 	
 	public void removeComponent(SubComponent component) {
-		components.remove(component);
+		if(components.remove(component)) {
+			componentSnapshot = null;
+			grid.remove(component);
+			clickTargets.remove(component);
+			FocusManager focusManager = state.getWindow().getFocusManager();
+			focusManager.clearFocusWithin(component.getComponent());
+			focusManager.invalidateFocusOrder();
+		}
 		if(directRefresh)
 			refreshMovement();
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	public void removeComponent(GuiComponent component) {
@@ -354,23 +530,63 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 	}
 	
 	public void clearComponents() {
+		FocusManager focusManager = state.getWindow().getFocusManager();
+		for(SubComponent component : components)
+			focusManager.clearFocusWithin(component.getComponent());
+		focusManager.invalidateFocusOrder();
 		components.clear();
+		componentSnapshot = null;
+		grid.clear();
+		clickTargets.clear();
 		if(directRefresh)
 			refreshMovement();
-		state.getWindow().markChange();
+		state.invalidate();
 	}
 	
 	public SubComponent getComponentAt(float x, float y){
-		for(SubComponent component : components) {
-			if(component.isActive() && component.inBounds(x, y)) {
-				return component;
-			}
-		}
-		return null;
+		List<SubComponent> candidates = new ArrayList<>();
+		grid.query(x, y, candidates);
+		SubComponent result = null;
+		for(SubComponent component : candidates)
+			if(component.isActive() && component.inBounds(x, y) && (result == null || component.order < result.order))
+				result = component;
+		return result;
+	}
+	
+	/**
+	 * @return A new list containing all active components whose bounds contain the given point, in the order
+	 * in which they were added
+	 */
+	public List<SubComponent> getComponentsAt(float x, float y){
+		List<SubComponent> candidates = new ArrayList<>();
+		grid.query(x, y, candidates);
+		List<SubComponent> result = new ArrayList<>(candidates.size());
+		for(SubComponent component : candidates)
+			if(component.isActive() && component.inBounds(x, y))
+				result.add(component);
+		result.sort((a, b) -> Long.compare(a.order, b.order));
+		return result;
 	}
 	
+	/**
+	 * @return An unmodifiable view of the components of this menu. Use addComponent and removeComponent to
+	 * change the components.
+	 */
 	public List<SubComponent> getComponents(){
-		return components;
+		return Collections.unmodifiableList(components);
+	}
+	
+	/**
+	 * @return An array containing the current components of this menu. The returned array must not be
+	 * modified, because it will be reused until the components of this menu change.
+	 */
+	protected SubComponent[] getComponentSnapshot(){
+		SubComponent[] snapshot = componentSnapshot;
+		if(snapshot == null){
+			snapshot = components.isEmpty() ? NO_COMPONENTS : components.toArray(new SubComponent[components.size()]);
+			componentSnapshot = snapshot;
+		}
+		return snapshot;
 	}
 	
 	public class SubComponent {
@@ -382,11 +598,32 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 		private float maxX;
 		private float maxY;
 		
+		/**
+		 * Increased whenever the bounds change, to invalidate the cached transform of the state of the component
+		 */
+		private long boundsVersion;
+		
+		private final RenderCache renderCache;
+		
+		private boolean didInit;
+		
+		private long order;
+		
+		/**
+		 * The mouse coordinates during the previous render, used to decide whether the render cache is still
+		 * valid for components that may look different when hovered.
+		 */
+		private float prevMouseX;
+		private float prevMouseY;
+		private boolean prevMouseOver;
+		
 		public SubComponent(GuiComponent component, float minX, float minY, float maxX, float maxY){
 			this.component = component;
+			this.renderCache = new RenderCache();
 			setBounds(minX, minY, maxX, maxY);
 			component.setState(new RelativeComponentState.Dynamic(new State()));
-			component.init();
+			if(!initLazily() || isVisible())
+				ensureInit();
 		}
 		
 		@Override
@@ -395,12 +632,44 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 		}
 		
 		public void render(GuiRenderer renderer){
+			render(renderer, state.getWindow().isRetainedRendering(), !state.getWindow().isHoverTracking(),
+					state.getMouseX() + screenCenterX, state.getMouseY() + screenCenterY);
+		}
+		
+		/**
+		 * Renders this component on the given renderer of the menu. If retained is true, the render commands
+		 * of the previous time will be reused if this component hasn't been invalidated. Components that are
+		 * or were hovered will be rendered again whenever the mouse moves because they might have a hover
+		 * effect.
+		 * @param renderer The renderer of the menu
+		 * @param retained Whether or not retained rendering is enabled
+		 * @param checkHover Whether or not the render cache should be ignored when the mouse moved over this
+		 * component. This is not needed when hover tracking is enabled, because the hover regions will
+		 * invalidate the components the mouse entered or left.
+		 * @param mouseX The x-coordinate of the mouse within the menu, including the screen center
+		 * @param mouseY The y-coordinate of the mouse within the menu, including the screen center
+		 */
+		void render(GuiRenderer renderer, boolean retained, boolean checkHover, float mouseX, float mouseY) {
 			float minRenderX = minX - screenCenterX;
 			float minRenderY = minY - screenCenterY;
 			float maxRenderX = maxX - screenCenterX;
 			float maxRenderY = maxY - screenCenterY;
-			if (minRenderX <= 1 && minRenderY <= 1 && maxRenderX >= 0 && maxRenderY >= 0)
-				component.render(renderer.getArea(minRenderX, minRenderY, maxRenderX, maxRenderY));
+			if (minRenderX <= 1 && minRenderY <= 1 && maxRenderX >= 0 && maxRenderY >= 0) {
+				ensureInit();
+				GuiRenderer area = renderer.getArea(minRenderX, minRenderY, maxRenderX, maxRenderY);
+				if (retained) {
+					boolean mouseOver = inBounds(mouseX, mouseY);
+					if (checkHover && (mouseOver || prevMouseOver) && (mouseX != prevMouseX || mouseY != prevMouseY))
+						renderCache.invalidate();
+					prevMouseOver = mouseOver;
+					prevMouseX = mouseX;
+					prevMouseY = mouseY;
+					area.renderCached(renderCache, component);
+				} else {
+					renderCache.invalidate();
+					component.render(area);
+				}
+			}
 		}
 		
 		public GuiComponent getComponent(){
@@ -408,10 +677,17 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 		}
 		
 		public void setComponent(GuiComponent newComponent) {
+			FocusManager focusManager = state.getWindow().getFocusManager();
+			focusManager.clearFocusWithin(component);
+			focusManager.invalidateFocusOrder();
 			newComponent.setState(new RelativeComponentState.Dynamic(new State()));
-			newComponent.init();
 			component = newComponent;
-			state.getWindow().markChange();
+			markLayoutChange();
+			didInit = false;
+			if(!initLazily() || isVisible())
+				ensureInit();
+			renderCache.invalidate();
+			state.invalidate();
 		}
 		
 		public void setBounds(float minX, float minY, float maxX, float maxY){
@@ -419,16 +695,46 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 			this.minY = minY;
 			this.maxX = maxX;
 			this.maxY = maxY;
-			state.getWindow().markChange();
+			boundsVersion++;
+			if(grid.contains(this)) {
+				grid.move(this, minX, minY, maxX, maxY);
+				invalidateFocusOrder();
+				markLayoutChange();
+			}
+			renderCache.invalidate();
+			state.invalidate();
 		}
 		
 		public void click(float x, float y, int button){
-			if(inBounds(x, y))
+			if(inBounds(x, y)) {
+				ensureInit();
 				component.click((x - minX) / (maxX - minX), (y - minY) / (maxY - minY), button);
-			else
+			} else if(didInit)
 				component.clickOut(button);
 		}
 		
+		/**
+		 * Initializes the component of this SubComponent if that hasn't been done yet.
+		 */
+		public void ensureInit(){
+			if(!didInit) {
+				didInit = true;
+				component.init();
+			}
+		}
+		
+		public boolean isInitialized(){
+			return didInit;
+		}
+		
+		/**
+		 * @return true if the bounds of this component intersect the area of the menu that is currently
+		 * visible
+		 */
+		public boolean isVisible(){
+			return minX <= screenCenterX + 1 && minY <= screenCenterY + 1 && maxX >= screenCenterX && maxY >= screenCenterY;
+		}
+		
 		public boolean inBounds(float x, float y){
 			return x >= minX && x <= maxX && y >= minY && y <= maxY;
 		}
@@ -464,6 +770,23 @@ implements TextShowingComponent, ImageShowingComponent, CheckableComponent, Edit
 				return maxY - screenCenterY;
 			}
             
+            @Override
+            public long version() {
+            	checkScreenCenter();
+            	return centerVersion + boundsVersion;
+            }
+            
+            @Override
+            public void invalidate() {
+            	renderCache.invalidate();
+            }
+            
+            @Override
+            public void notifyActive() {
+            	if(grid.contains(SubComponent.this))
+            		clickTargets.add(SubComponent.this);
+            }
+            
             @Override
             public String toString() {
             	return "SubMenuState(" + parent() + ", " + minX() + ", " + minY() + ", " + maxX() + ", " + maxY() + ")";
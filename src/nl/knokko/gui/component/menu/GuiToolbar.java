@@ -32,9 +32,8 @@ import nl.knokko.gui.mousecode.MouseCode;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.testing.TextShowingComponent;
 import nl.knokko.gui.texture.GuiTexture;
-import nl.knokko.gui.texture.loader.GuiTextureLoader;
-import nl.knokko.gui.util.TextBuilder;
 import nl.knokko.gui.util.TextBuilder.Properties;
+import nl.knokko.gui.util.TextTextureCache;
 
 public class GuiToolbar extends AbstractGuiComponent implements TextShowingComponent {
 	
@@ -70,14 +69,14 @@ public class GuiToolbar extends AbstractGuiComponent implements TextShowingCompo
 	}
 
 	public void init() {
-		GuiTextureLoader loader = state.getWindow().getTextureLoader();
+		TextTextureCache cache = state.getWindow().getTextTextureCache();
 		textures = new GuiTexture[options.length + 1];
 		activeTextures = new GuiTexture[options.length + 1];
-		textures[0] = loader.loadTexture(TextBuilder.createTexture(name, nameProperties, IMAGE_WIDTH, IMAGE_HEIGHT));
-		activeTextures[0] = loader.loadTexture(TextBuilder.createTexture(name, nameActiveProperties, IMAGE_WIDTH, IMAGE_HEIGHT));
+		textures[0] = cache.get(name, nameProperties, IMAGE_WIDTH, IMAGE_HEIGHT);
+		activeTextures[0] = cache.get(name, nameActiveProperties, IMAGE_WIDTH, IMAGE_HEIGHT);
 		for(int index = 0; index < options.length; index++){
-			textures[index + 1] = loader.loadTexture(TextBuilder.createTexture(options[index].getName(), properties, IMAGE_WIDTH, IMAGE_HEIGHT));
-			activeTextures[index + 1] = loader.loadTexture(TextBuilder.createTexture(options[index].getName(), activeProperties, IMAGE_WIDTH, IMAGE_HEIGHT));
+			textures[index + 1] = cache.get(options[index].getName(), properties, IMAGE_WIDTH, IMAGE_HEIGHT);
+			activeTextures[index + 1] = cache.get(options[index].getName(), activeProperties, IMAGE_WIDTH, IMAGE_HEIGHT);
 		}
 	}
 
@@ -89,6 +88,7 @@ public class GuiToolbar extends AbstractGuiComponent implements TextShowingCompo
 	}
 
 	public void render(GuiRenderer renderer) {
+		renderer.trackHover(state, true);
 		int mouseIndex = getMouseIndex();
 		if(active || mouseIndex == 0)
 			renderer.renderTexture(activeTextures[0], 0, getY(1), 1, 1);
@@ -116,7 +116,7 @@ public class GuiToolbar extends AbstractGuiComponent implements TextShowingCompo
 			if(index != -1){
 				if(index == 0) {
 					active = !active;
-					state.getWindow().markChange();
+					state.invalidate();
 				} else if(active)
 					options[index - 1].action.run();
 			}
@@ -124,8 +124,10 @@ public class GuiToolbar extends AbstractGuiComponent implements TextShowingCompo
 	}
 
 	public void clickOut(int button) {
-		active = false;
-		state.getWindow().markChange();
+		if (active) {
+			active = false;
+			state.invalidate();
+		}
 	}
 
 	public boolean scroll(float amount) {
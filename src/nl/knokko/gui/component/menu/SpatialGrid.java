@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.component.menu;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid that keeps track of which items overlap which cells, so that the items at a given point
+ * can be found without checking all items. Items that would cover too many cells are stored in a separate
+ * list that is checked on every query.
+ *
+ * The query method returns all items in the cell of the point, so callers still need to check whether the
+ * point is really within the bounds of the returned items.
+ * @param <T> The type of the items
+ */
+final class SpatialGrid<T> {
+
+	private static final int MAX_CELLS_PER_ITEM = 64;
+
+	private final float cellSize;
+
+	private final Map<Long,List<T>> cells;
+	private final Map<T,int[]> itemCells;
+	private final List<T> oversizedItems;
+
+	SpatialGrid(float cellSize) {
+		this.cellSize = cellSize;
+		this.cells = new HashMap<Long,List<T>>();
+		this.itemCells = new IdentityHashMap<T,int[]>();
+		this.oversizedItems = new ArrayList<T>();
+	}
+
+	private int toCell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static Long key(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	boolean contains(T item) {
+		return itemCells.containsKey(item);
+	}
+
+	void add(T item, float minX, float minY, float maxX, float maxY) {
+		int minCellX = toCell(minX);
+		int minCellY = toCell(minY);
+		int maxCellX = toCell(maxX);
+		int maxCellY = toCell(maxY);
+		long cellCount = (long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1);
+		if (cellCount > MAX_CELLS_PER_ITEM || cellCount <= 0) {
+			oversizedItems.add(item);
+			itemCells.put(item, null);
+		} else {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+					cells.computeIfAbsent(key(cellX, cellY), cell -> new ArrayList<T>(2)).add(item);
+				}
+			}
+			itemCells.put(item, new int[] {minCellX, minCellY, maxCellX, maxCellY});
+		}
+	}
+
+	void remove(T item) {
+		if (!itemCells.containsKey(item)) {
+			return;
+		}
+		int[] range = itemCells.remove(item);
+		if (range == null) {
+			oversizedItems.remove(item);
+		} else {
+			for (int cellX = range[0]; cellX <= range[2]; cellX++) {
+				for (int cellY = range[1]; cellY <= range[3]; cellY++) {
+					Long key = key(cellX, cellY);
+					List<T> cell = cells.get(key);
+					cell.remove(item);
+					if (cell.isEmpty()) {
+						cells.remove(key);
+					}
+				}
+			}
+		}
+	}
+
+	void move(T item, float minX, float minY, float maxX, float maxY) {
+		remove(item);
+		add(item, minX, minY, maxX, maxY);
+	}
+
+	void clear() {
+		cells.clear();
+		itemCells.clear();
+		oversizedItems.clear();
+	}
+
+	/**
+	 * Adds all items that might contain the given point to the destination collection.
+	 */
+	void query(float x, float y, Collection<T> dest) {
+		List<T> cell = cells.get(key(toCell(x), toCell(y)));
+		if (cell != null) {
+			dest.addAll(cell);
+		}
+		dest.addAll(oversizedItems);
+	}
+}
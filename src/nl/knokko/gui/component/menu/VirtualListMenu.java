@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.component.menu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.render.GuiRenderer;
+
+/**
+ * A menu that shows a (possibly very long) list of rows below each other, but only creates row components
+ * for the rows that are currently visible (plus a few extra rows above and below the visible area). When
+ * the user scrolls, the row components that are no longer visible will be recycled to show the rows that
+ * became visible. Thus the cost of this menu depends on the number of visible rows rather than on the
+ * number of rows in the list.
+ *
+ * Subclasses should tell how many rows there are, create empty row components and bind row components to
+ * rows. When the data of the list changes, refreshRows() should be called.
+ * @param <R> The type of the row components
+ */
+public abstract class VirtualListMenu<R extends GuiComponent> extends GuiMenu {
+
+	/**
+	 * The number of rows above and below the visible area that will also get a row component
+	 */
+	public static final int DEFAULT_OVERSCAN = 2;
+
+	private final List<RowSlot> slots;
+
+	private float rowHeight;
+	private int overscan;
+
+	/**
+	 * The index of the first row that got a row component during the last layout, or -1 if the rows need
+	 * to be laid out again
+	 */
+	private int firstRow;
+	private int lastRow;
+
+	/**
+	 * @param rowHeight The height of each row, relative to the height of this menu
+	 * @param overscan The number of rows above and below the visible area that should also get a row
+	 * component
+	 */
+	public VirtualListMenu(float rowHeight, int overscan) {
+		this.rowHeight = rowHeight;
+		this.overscan = overscan;
+		this.slots = new ArrayList<RowSlot>();
+		this.firstRow = -1;
+	}
+
+	public VirtualListMenu(float rowHeight) {
+		this(rowHeight, DEFAULT_OVERSCAN);
+	}
+
+	/**
+	 * @return The number of rows in the list
+	 */
+	protected abstract int getRowCount();
+
+	/**
+	 * Creates a new row component. This will only be called a few times because the row components will
+	 * be recycled. The row component will be initialized before it is bound to its first row.
+	 */
+	protected abstract R createRow();
+
+	/**
+	 * Lets the given row component show the row at the given index. This method is called whenever a row
+	 * component is recycled, so it should be cheap.
+	 * @param row The row component, which could have been bound to another row before
+	 * @param index The index of the row to show
+	 */
+	protected abstract void bindRow(R row, int index);
+
+	@Override
+	protected void addComponents() {
+		refreshRows();
+	}
+
+	/**
+	 * Binds all row components again and refreshes the scroll bounds. This should be called whenever the
+	 * number of rows or the data in the rows changes.
+	 */
+	public void refreshRows() {
+		firstRow = -1;
+
+		// The data or height of the rows may have changed, so even the rows that keep their slot need to be
+		// bound again
+		for (RowSlot slot : slots)
+			slot.rowIndex = -1;
+		refreshMovement();
+		if (screenCenterY < minCenterY)
+			screenCenterY = minCenterY;
+		if (screenCenterY > maxCenterY)
+			screenCenterY = maxCenterY;
+		screenCenterChanged();
+		layoutRows();
+	}
+
+	public float getRowHeight() {
+		return rowHeight;
+	}
+
+	public void setRowHeight(float newRowHeight) {
+		rowHeight = newRowHeight;
+		refreshRows();
+	}
+
+	/**
+	 * @return The minimum y-coordinate of the row at the given index
+	 */
+	protected float getRowMinY(int index) {
+		return 1f - (index + 1) * rowHeight;
+	}
+
+	@Override
+	protected void refreshMovement() {
+		minCenterX = 0;
+		maxCenterX = 0;
+		minCenterY = Math.min(0, getRowMinY(getRowCount() - 1));
+		maxCenterY = 0;
+		state.invalidate();
+	}
+
+	/**
+	 * Makes sure the row components are bound to the rows that are currently visible. This is cheap if the
+	 * visible rows haven't changed since the previous call.
+	 */
+	protected void layoutRows() {
+		int rowCount = getRowCount();
+		int newFirstRow = Math.max(0, (int) Math.ceil(-screenCenterY / rowHeight - 1) - overscan);
+		int newLastRow = Math.min(rowCount - 1, (int) Math.floor((1 - screenCenterY) / rowHeight) + overscan);
+		if (newFirstRow == firstRow && newLastRow == lastRow)
+			return;
+
+		int neededSlots = newLastRow - newFirstRow + 1;
+		if (neededSlots > slots.size()) {
+
+			// The indices of the existing slots will change, so they need to be bound again
+			for (RowSlot slot : slots)
+				slot.rowIndex = -1;
+			while (slots.size() < neededSlots) {
+				RowSlot slot = new RowSlot(createRow());
+				slots.add(slot);
+				addComponent(slot);
+			}
+		}
+
+		// Every row in the range gets the slot at (row index % number of slots), so the slot of a row that
+		// stays visible won't change
+		int slotCount = slots.size();
+		for (RowSlot slot : slots)
+			if (slot.rowIndex != -1 && (slot.rowIndex < newFirstRow || slot.rowIndex > newLastRow))
+				slot.unbind();
+		for (int index = newFirstRow; index <= newLastRow; index++) {
+			RowSlot slot = slots.get(index % slotCount);
+			if (slot.rowIndex != index)
+				slot.bind(index);
+		}
+		firstRow = newFirstRow;
+		lastRow = newLastRow;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		layoutRows();
+	}
+
+	@Override
+	public void render(GuiRenderer renderer) {
+		layoutRows();
+		super.render(renderer);
+	}
+
+	@Override
+	public boolean scroll(float amount) {
+		boolean result = super.scroll(amount);
+		layoutRows();
+		return result;
+	}
+
+	private class RowSlot extends SubComponent {
+
+		private final R row;
+		private int rowIndex;
+
+		RowSlot(R row) {
+			super(row, 0, 0, 1, rowHeight);
+			this.row = row;
+			this.rowIndex = -1;
+		}
+
+		void bind(int index) {
+			rowIndex = index;
+			float minY = getRowMinY(index);
+			setBounds(0, minY, 1, minY + rowHeight);
+			bindRow(row, index);
+		}
+
+		void unbind() {
+			rowIndex = -1;
+			state.invalidate();
+		}
+
+		@Override
+		protected boolean isActive() {
+			return rowIndex != -1;
+		}
+	}
+}
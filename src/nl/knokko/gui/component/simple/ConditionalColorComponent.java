@@ -26,15 +26,28 @@ package nl.knokko.gui.component.simple;
 import nl.knokko.gui.color.GuiColor;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.util.Condition;
+import nl.knokko.gui.util.ConditionTracker;
 
 public class ConditionalColorComponent extends SimpleColorComponent {
 	
 	protected Condition condition;
 
+	/**
+	 * Tracks the condition, to invalidate this component when it changes
+	 */
+	protected final ConditionTracker conditionTracker = new ConditionTracker();
+	
 	public ConditionalColorComponent(GuiColor color, Condition condition) {
 		super(color);
 		this.condition = condition;
 	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (conditionTracker.changed(condition))
+			state.invalidate();
+	}
 	
 	@Override
 	public void render(GuiRenderer renderer){
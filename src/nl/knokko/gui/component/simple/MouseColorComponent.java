@@ -40,6 +40,7 @@ public class MouseColorComponent extends AbstractGuiComponent {
 	public void update() {}
 
 	public void render(GuiRenderer renderer) {
+		renderer.trackHover(state);
 		if(state.isMouseOver())
 			renderer.clear(hoverColor);
 		else
@@ -31,6 +31,8 @@ import nl.knokko.gui.render.GuiRenderer;
 public class SimpleColorComponent implements GuiComponent {
 	
 	private final GuiColor color;
+	
+	protected GuiComponentState state;
 
 	public SimpleColorComponent(GuiColor color) {
 		this.color = color;
@@ -50,10 +52,12 @@ public class SimpleColorComponent implements GuiComponent {
 		return false;
 	}
 
-	public void setState(GuiComponentState state) {}
+	public void setState(GuiComponentState state) {
+		this.state = state;
+	}
 	
 	public GuiComponentState getState(){
-		return null;
+		return state;
 	}
 
 	public void keyPressed(int keyCode) {}
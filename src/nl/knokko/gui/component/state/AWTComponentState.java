@@ -23,22 +23,18 @@
  *******************************************************************************/
 package nl.knokko.gui.component.state;
 
-import javax.swing.JFrame;
-
 import nl.knokko.gui.window.AWTGuiWindow;
 
 public class AWTComponentState implements GuiComponentState {
 	
-	private final JFrame frame;
 	private final AWTGuiWindow window;
 
 	public AWTComponentState(AWTGuiWindow window) {
-		this.frame = window.getFrame();
 		this.window = window;
 	}
 
 	public boolean isMouseOver() {
-		return frame.getMousePosition() != null;
+		return window.isMouseOver();
 	}
 
 	public float getMouseX() {
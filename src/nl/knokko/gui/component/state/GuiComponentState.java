@@ -94,4 +94,29 @@ public interface GuiComponentState {
 	}
 	
 	GuiWindow getWindow();
+	
+	/**
+	 * @return The state of the component that contains the component of this state, or null if this state
+	 * has no parent state (for instance because it is the state of the main component of the window)
+	 */
+	default GuiComponentState getParent() {
+		return null;
+	}
+	
+	/**
+	 * Notifies this state that the appearance of its component has changed. Relative states will pass this
+	 * on to their parent state, so that the render caches of all ancestors will be invalidated as well. The
+	 * root state will notify the window that it should render again.
+	 */
+	default void invalidate() {
+		getWindow().markChange();
+	}
+	
+	/**
+	 * Notifies this state that its component became active without being clicked, for instance because an
+	 * edit field got the focus. Menus only pass clickOut on to components that were clicked or notified
+	 * this way, so components that need clickOut to become inactive again should call this method. Relative
+	 * states will pass this on to their parent state.
+	 */
+	default void notifyActive() {}
 }
\ No newline at end of file
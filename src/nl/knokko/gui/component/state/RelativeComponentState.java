@@ -62,6 +62,21 @@ public class RelativeComponentState {
 		public GuiWindow getWindow() {
 			return parent.getWindow();
 		}
+		
+		@Override
+		public GuiComponentState getParent() {
+			return parent;
+		}
+		
+		@Override
+		public void invalidate() {
+			parent.invalidate();
+		}
+		
+		@Override
+		public void notifyActive() {
+			parent.notifyActive();
+		}
 
 		@Override
 		public float getMouseDX() {
@@ -96,26 +111,138 @@ public class RelativeComponentState {
 	
 	public static class Dynamic implements GuiComponentState {
 		
+		/**
+		 * The version of states that don't keep track of changes to their bounds
+		 */
+		public static final long UNVERSIONED = Long.MIN_VALUE;
+		
 		private final State state;
 		
+		/**
+		 * The window, the parent state, the layout version of the window and the version of the state at the
+		 * time the absolute bounds below were computed. If the parent isn't dynamic, its bounds are
+		 * remembered as well.
+		 */
+		private GuiWindow cachedWindow;
+		private GuiComponentState cachedParent;
+		private long cachedLayoutVersion;
+		private long cachedStateVersion;
+		private float cachedParentMinX;
+		private float cachedParentMinY;
+		private float cachedParentMaxX;
+		private float cachedParentMaxY;
+		
+		/**
+		 * True if this state or one of its dynamic ancestors is unversioned, in which case the absolute bounds
+		 * need to be computed again whenever they are used
+		 */
+		private boolean unversioned;
+		
+		private float absoluteMinX;
+		private float absoluteMinY;
+		private float absoluteMaxX;
+		private float absoluteMaxY;
+		
+		/**
+		 * The nearest ancestor state that is not dynamic. The mouse coordinates of this state are computed
+		 * as (mouseSource.getMouse - mouseOffset) * mouseScale.
+		 */
+		private GuiComponentState mouseSource;
+		
+		private float mouseOffsetX;
+		private float mouseOffsetY;
+		private float mouseScaleX;
+		private float mouseScaleY;
+		
 		public Dynamic(State state){
 			this.state = state;
 		}
+		
+		private boolean isValid() {
+			if(cachedParent == null || unversioned)
+				return false;
+			if(cachedWindow.getLayoutVersion() != cachedLayoutVersion || state.parent() != cachedParent)
+				return false;
+			if(state.version() != cachedStateVersion)
+				return false;
+			if(cachedParent instanceof Dynamic)
+				return true;
+			return cachedParent.getMinX() == cachedParentMinX && cachedParent.getMinY() == cachedParentMinY 
+					&& cachedParent.getMaxX() == cachedParentMaxX && cachedParent.getMaxY() == cachedParentMaxY;
+		}
+		
+		/**
+		 * Computes the absolute bounds and the mouse transform of this state again if they may have changed
+		 * since the last time they were computed. Changes to the bounds of components are reported to the
+		 * window (see GuiWindow.markLayoutChange()), so checking whether the cached transform is still valid
+		 * only needs to compare the layout version of the window and the version of this state, regardless of
+		 * the nesting depth.
+		 */
+		private void validate() {
+			if(isValid())
+				return;
+			long stateVersion = state.version();
+			GuiComponentState parent = state.parent();
+			float minX = state.minX();
+			float minY = state.minY();
+			float maxX = state.maxX();
+			float maxY = state.maxY();
+			float parentMinX = parent.getMinX();
+			float parentMinY = parent.getMinY();
+			float parentWidth = parent.getWidth();
+			float parentHeight = parent.getHeight();
+			absoluteMinX = parentMinX + minX * parentWidth;
+			absoluteMinY = parentMinY + minY * parentHeight;
+			absoluteMaxX = parentMinX + maxX * parentWidth;
+			absoluteMaxY = parentMinY + maxY * parentHeight;
+			if(parent instanceof Dynamic) {
+				Dynamic dynamicParent = (Dynamic) parent;
+				mouseSource = dynamicParent.mouseSource;
+				mouseOffsetX = dynamicParent.mouseOffsetX + minX / dynamicParent.mouseScaleX;
+				mouseOffsetY = dynamicParent.mouseOffsetY + minY / dynamicParent.mouseScaleY;
+				mouseScaleX = dynamicParent.mouseScaleX / (maxX - minX);
+				mouseScaleY = dynamicParent.mouseScaleY / (maxY - minY);
+				cachedWindow = dynamicParent.cachedWindow;
+				unversioned = stateVersion == UNVERSIONED || dynamicParent.unversioned;
+			} else {
+				mouseSource = parent;
+				mouseOffsetX = minX;
+				mouseOffsetY = minY;
+				mouseScaleX = 1f / (maxX - minX);
+				mouseScaleY = 1f / (maxY - minY);
+				cachedWindow = parent.getWindow();
+				unversioned = stateVersion == UNVERSIONED;
+				cachedParentMinX = parentMinX;
+				cachedParentMinY = parentMinY;
+				cachedParentMaxX = parent.getMaxX();
+				cachedParentMaxY = parent.getMaxY();
+			}
+			cachedParent = parent;
+			cachedStateVersion = stateVersion;
+			cachedLayoutVersion = cachedWindow.getLayoutVersion();
+		}
 
 		public boolean isMouseOver() {
-			float mouseX = state.parent().getMouseX();
-			float mouseY = state.parent().getMouseY();
-			return mouseX >= state.minX() && mouseX <= state.maxX() && mouseY >= state.minY() && mouseY <= state.maxY();
+			float mouseX = getMouseX();
+			float mouseY = getMouseY();
+			return mouseX >= 0 && mouseX <= 1 && mouseY >= 0 && mouseY <= 1;
 		}
 
 		public float getMouseX() {
-			return (state.parent().getMouseX() - state.minX()) / (state.maxX() - state.minX());
+			validate();
+			return (mouseSource.getMouseX() - mouseOffsetX) * mouseScaleX;
 		}
 
 		public float getMouseY() {
-			return (state.parent().getMouseY() - state.minY()) / (state.maxY() - state.minY());
+			validate();
+			return (mouseSource.getMouseY() - mouseOffsetY) * mouseScaleY;
 		}
 		
+		/**
+		 * The bounds of a dynamic state can change. The absolute transforms of dynamic states are cached until
+		 * the version of the state or the layout version of the window changes, so implementations whose
+		 * bounds change should call markLayoutChange() on the window as well.
+		 */
 		public static interface State {
 			
 			GuiComponentState parent();
@@ -127,6 +254,27 @@ public class RelativeComponentState {
 			float maxX();
 			
 			float maxY();
+			
+			/**
+			 * @return A number that changes whenever minX(), minY(), maxX() or maxY() change, or UNVERSIONED if
+			 * this state doesn't keep track of that. The transforms of an unversioned state and its dynamic
+			 * descendants will be computed again whenever they are needed.
+			 */
+			default long version() {
+				return UNVERSIONED;
+			}
+			
+			/**
+			 * Will be called when the component of this state has been invalidated, before the parent state
+			 * is invalidated. Implementations can use this to invalidate their render caches.
+			 */
+			default void invalidate() {}
+			
+			/**
+			 * Will be called when the component of this state notifies that it became active, before the
+			 * parent state is notified.
+			 */
+			default void notifyActive() {}
 		}
 
 		public GuiWindow getWindow() {
@@ -134,35 +282,70 @@ public class RelativeComponentState {
 				System.out.println(state);
 			return state.parent().getWindow();
 		}
+		
+		@Override
+		public GuiComponentState getParent() {
+			return state.parent();
+		}
+		
+		@Override
+		public void invalidate() {
+			state.invalidate();
+			state.parent().invalidate();
+		}
+		
+		@Override
+		public void notifyActive() {
+			state.notifyActive();
+			state.parent().notifyActive();
+		}
 
 		@Override
 		public float getMouseDX() {
-			return state.parent().getMouseDX() / (state.maxX() - state.minX());
+			validate();
+			return mouseSource.getMouseDX() * mouseScaleX;
 		}
 
 		@Override
 		public float getMouseDY() {
-			return state.parent().getMouseDY() / (state.maxY() - state.minY());
+			validate();
+			return mouseSource.getMouseDY() * mouseScaleY;
 		}
 
 		@Override
 		public float getMinX() {
-			return state.parent().getMinX() + state.minX() * state.parent().getWidth();
+			validate();
+			return absoluteMinX;
 		}
 
 		@Override
 		public float getMinY() {
-			return state.parent().getMinY() + state.minY() * state.parent().getHeight();
+			validate();
+			return absoluteMinY;
 		}
 
 		@Override
 		public float getMaxX() {
-			return state.parent().getMinX() + state.maxX() * state.parent().getWidth();
+			validate();
+			return absoluteMaxX;
 		}
 
 		@Override
 		public float getMaxY() {
-			return state.parent().getMinY() + state.maxY() * state.parent().getHeight();
+			validate();
+			return absoluteMaxY;
+		}
+		
+		@Override
+		public float getWidth() {
+			validate();
+			return absoluteMaxX - absoluteMinX;
+		}
+		
+		@Override
+		public float getHeight() {
+			validate();
+			return absoluteMaxY - absoluteMinY;
 		}
 	}
 }
\ No newline at end of file
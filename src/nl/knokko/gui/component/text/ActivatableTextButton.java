@@ -26,7 +26,7 @@ package nl.knokko.gui.component.text;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.util.Condition;
-import nl.knokko.gui.util.TextBuilder;
+import nl.knokko.gui.util.ConditionTracker;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
 public class ActivatableTextButton extends TextButton {
@@ -37,16 +37,28 @@ public class ActivatableTextButton extends TextButton {
     
     protected Condition activeCondition;
     
+    /**
+     * Tracks the active condition, to invalidate this component when it changes
+     */
+    protected final ConditionTracker activeConditionTracker = new ConditionTracker();
+    
     public ActivatableTextButton(String text, Properties properties, Properties hoverProperties, Properties activeProperties, Runnable clickAction, Condition activeCondition) {
         super(text, properties, hoverProperties, clickAction);
         this.activeProperties = activeProperties;
         this.activeCondition = activeCondition;
     }
+
+    @Override
+    public void update() {
+        super.update();
+        if (activeConditionTracker.changed(activeCondition))
+            state.invalidate();
+    }
     
     @Override
     protected void updateTexture(){
         super.updateTexture();
-        activeTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, activeProperties));
+        requestTexture(activeProperties, () -> activeProperties, newTexture -> activeTexture = newTexture);
     }
     
     @Override
@@ -59,7 +71,6 @@ public class ActivatableTextButton extends TextButton {
     
     public void setActiveProperties(Properties properties){
         activeProperties = properties;
-        activeTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, activeProperties));
-        state.getWindow().markChange();
+        requestTexture(activeProperties, () -> activeProperties, newTexture -> activeTexture = newTexture);
     }
 }
\ No newline at end of file
@@ -25,16 +25,29 @@ package nl.knokko.gui.component.text;
 
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.util.Condition;
+import nl.knokko.gui.util.ConditionTracker;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
 public class ConditionalTextButton extends TextButton {
 	
 	protected Condition condition;
 
+	/**
+	 * Tracks the condition, to invalidate this component when it changes
+	 */
+	protected final ConditionTracker conditionTracker = new ConditionTracker();
+
 	public ConditionalTextButton(String text, Properties properties, Properties hoverProperties, Runnable action, Condition condition) {
 		super(text, properties, hoverProperties, action);
 		this.condition = condition;
 	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (conditionTracker.changed(condition))
+			state.invalidate();
+	}
 	
 	@Override
 	public void click(float x, float y, int button){
@@ -2,16 +2,29 @@ package nl.knokko.gui.component.text;
 
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.util.Condition;
+import nl.knokko.gui.util.ConditionTracker;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
 public class ConditionalTextComponent extends TextComponent {
 	
 	protected final Condition condition;
 
+	/**
+	 * Tracks the condition, to invalidate this component when it changes
+	 */
+	protected final ConditionTracker conditionTracker = new ConditionTracker();
+
 	public ConditionalTextComponent(String text, Properties properties, Condition condition) {
 		super(text, properties);
 		this.condition = condition;
 	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (conditionTracker.changed(condition))
+			state.invalidate();
+	}
 	
 	@Override
 	public void render(GuiRenderer renderer) {
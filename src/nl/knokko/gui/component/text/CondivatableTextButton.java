@@ -26,7 +26,7 @@ package nl.knokko.gui.component.text;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.util.Condition;
-import nl.knokko.gui.util.TextBuilder;
+import nl.knokko.gui.util.ConditionTracker;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
 /**
@@ -40,6 +40,11 @@ public class CondivatableTextButton extends ConditionalTextButton {
 	protected Properties activeProperties;
 	
 	protected Condition activeCondition;
+	
+	/**
+	 * Tracks the active condition, to invalidate this component when it changes
+	 */
+	protected final ConditionTracker activeConditionTracker = new ConditionTracker();
 
 	public CondivatableTextButton(String text, Properties properties, Properties hoverProperties, 
 			Properties activeProperties, Runnable action, Condition condition, Condition activeCondition) {
@@ -47,11 +52,18 @@ public class CondivatableTextButton extends ConditionalTextButton {
 		this.activeProperties = activeProperties;
 		this.activeCondition = activeCondition;
 	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (activeConditionTracker.changed(activeCondition))
+			state.invalidate();
+	}
 	
 	@Override
     protected void updateTexture(){
         super.updateTexture();
-        activeTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, activeProperties));
+        requestTexture(activeProperties, () -> activeProperties, newTexture -> activeTexture = newTexture);
     }
     
     @Override
@@ -64,7 +76,6 @@ public class CondivatableTextButton extends ConditionalTextButton {
     
     public void setActiveProperties(Properties properties){
         activeProperties = properties;
-        activeTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, activeProperties));
-        state.getWindow().markChange();
+        requestTexture(activeProperties, () -> activeProperties, newTexture -> activeTexture = newTexture);
     }
 }
\ No newline at end of file
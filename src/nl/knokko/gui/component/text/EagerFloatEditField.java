@@ -10,6 +10,12 @@ public class EagerFloatEditField extends FloatEditField {
 	private final DoubleConsumer onChange;
 	
 	private boolean didInit;
+	
+	/**
+	 * The value that was passed to onChange most recently, only valid if hasNotified is true
+	 */
+	private double lastValue;
+	private boolean hasNotified;
 
 	public EagerFloatEditField(double initialValue, double minValue, 
 			Properties passiveProperties, Properties activeProperties,
@@ -34,9 +40,25 @@ public class EagerFloatEditField extends FloatEditField {
 	@Override
 	protected void updateTexture() {
 		super.updateTexture();
-		
+		notifyChange();
+	}
+	
+	@Override
+	protected void updateGlyphs() {
+		super.updateGlyphs();
+		notifyChange();
+	}
+	
+	/**
+	 * Passes the value to onChange, unless it was already passed after the last change. The texture is
+	 * updated again when this field loses focus, which shouldn't notify the same value twice.
+	 */
+	private void notifyChange() {
 		Option.Double newValue = getDouble();
-		if (newValue.hasValue() && didInit)
+		if (didInit && newValue.hasValue() && (!hasNotified || Double.compare(newValue.getValue(), lastValue) != 0)) {
+			lastValue = newValue.getValue();
+			hasNotified = true;
 			onChange.accept(newValue.getValue());
+		}
 	}
 }
@@ -10,6 +10,12 @@ public class EagerIntEditField extends IntEditField {
 	private final IntConsumer onChange;
 	
 	private boolean didInit;
+	
+	/**
+	 * The value that was passed to onChange most recently, only valid if hasNotified is true
+	 */
+	private long lastValue;
+	private boolean hasNotified;
 
 	public EagerIntEditField(long initial, long minValue, 
 			Properties passiveProperties, Properties activeProperties,
@@ -34,9 +40,25 @@ public class EagerIntEditField extends IntEditField {
 	@Override
 	protected void updateTexture() {
 		super.updateTexture();
-		
+		notifyChange();
+	}
+	
+	@Override
+	protected void updateGlyphs() {
+		super.updateGlyphs();
+		notifyChange();
+	}
+	
+	/**
+	 * Passes the value to onChange, unless it was already passed after the last change. The texture is
+	 * updated again when this field loses focus, which shouldn't notify the same value twice.
+	 */
+	private void notifyChange() {
 		Option.Int newValue = getInt();
-		if (didInit && newValue.hasValue())
+		if (didInit && newValue.hasValue() && (!hasNotified || newValue.getValue() != lastValue)) {
+			lastValue = newValue.getValue();
+			hasNotified = true;
 			onChange.accept(newValue.getValue());
+		}
 	}
 }
@@ -7,6 +7,11 @@ import nl.knokko.gui.util.TextBuilder.Properties;
 public class EagerTextEditField extends TextEditField {
 	
 	private final Consumer<String> onChange;
+	
+	/**
+	 * The text that was passed to onChange most recently, or null if onChange hasn't been called yet
+	 */
+	private String lastText;
 
 	public EagerTextEditField(
 			String text, Properties passiveProperties, Properties activeProperties,
@@ -18,6 +23,24 @@ public class EagerTextEditField extends TextEditField {
 	@Override
 	protected void updateTexture() {
 		super.updateTexture();
-		onChange.accept(text);
+		notifyChange();
+	}
+	
+	@Override
+	protected void updateGlyphs() {
+		super.updateGlyphs();
+		notifyChange();
+	}
+	
+	/**
+	 * Passes the text to onChange, unless it was already passed after the last change. The texture is
+	 * updated again when this field loses focus, which shouldn't notify the same text twice.
+	 */
+	private void notifyChange() {
+		String text = getText();
+		if (!text.equals(lastText)) {
+			lastText = text;
+			onChange.accept(text);
+		}
 	}
 }
@@ -27,20 +27,21 @@ public class FloatEditField extends TextEditField {
 	
 	@Override
 	public void keyPressed(char character) {
-		if ((character >= '0' && character <= '9') || character == '.' || (text.isEmpty() && character == '-')) {
+		if ((character >= '0' && character <= '9') || character == '.' || (buffer.isEmpty() && character == '-')) {
 			super.keyPressed(character);
 		}
 	}
 	
 	@Override
 	protected void paste(String clipboardContent) {
+		StringBuilder filtered = new StringBuilder(clipboardContent.length());
 		clipboardContent.chars().forEachOrdered(character -> {
-			if ((text.isEmpty() && character == '-') || character == '.' ||
+			if ((filtered.length() == 0 && buffer.isEmpty() && character == '-') || character == '.' ||
 					(character >= '0' && character <= '9')) {
-				this.text += (char) character;
+				filtered.append((char) character);
 			}
 		 });
-		updateTexture();
+		buffer.type(filtered);
 	}
 	
 	public Option.Double getDouble() {
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.component.text;
+
+import java.awt.Font;
+import java.util.Arrays;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.render.GuiRenderer;
+import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.util.CharBuilder;
+import nl.knokko.gui.util.TextBuilder.HorAlignment;
+import nl.knokko.gui.util.TextBuilder.VerAlignment;
+
+/**
+ * A line of text that is rendered as a sequence of character masks of a CharBuilder rather than a single
+ * baked texture. The x-coordinates of the characters are stored as prefix sums of their widths, so
+ * changing the text only requires updating the characters after the first character that changed. This
+ * makes it cheap to append or remove characters at the end, which is what happens while typing. When the
+ * text is stored in a TextBuffer, update(source, start) can be used to lay out only the changed range.
+ */
+public class GlyphRun {
+
+	private static final GuiTexture[] NO_GLYPHS = {};
+	private static final char[] NO_CHARS = {};
+
+	private final CharBuilder charBuilder;
+	private final Font font;
+
+	private char[] chars;
+	private GuiTexture[] glyphs;
+
+	/**
+	 * offsets[index] is the sum of the widths (in pixels) of the glyphs before the glyph at the given index,
+	 * so offsets[length] is the width of the entire run.
+	 */
+	private int[] offsets;
+
+	private int length;
+	private int height;
+
+	public GlyphRun(CharBuilder charBuilder, Font font) {
+		this.charBuilder = charBuilder;
+		this.font = font;
+		this.chars = NO_CHARS;
+		this.glyphs = NO_GLYPHS;
+		this.offsets = new int[1];
+	}
+
+	public Font getFont() {
+		return font;
+	}
+
+	public String getText() {
+		return new String(chars, 0, length);
+	}
+
+	/**
+	 * @return The number of characters in this run
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return The width of this run, in pixels of the character textures
+	 */
+	public int getWidth() {
+		return offsets[length];
+	}
+
+	/**
+	 * @return The height of this run, in pixels of the character textures
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Changes the text of this run. Only the characters after the common prefix of the old and new text will
+	 * be laid out again.
+	 */
+	public void setText(CharSequence newText) {
+		int commonLength = 0;
+		int maxCommonLength = Math.min(length, newText.length());
+		while (commonLength < maxCommonLength && chars[commonLength] == newText.charAt(commonLength))
+			commonLength++;
+		if (commonLength != length || commonLength != newText.length())
+			update(newText, commonLength);
+	}
+
+	/**
+	 * Lays out the characters of the source again, starting at the given index. The characters before that
+	 * index must not have been changed since the last time this run was laid out.
+	 * @param source The new text of this run
+	 * @param start The index of the first character that might have changed
+	 */
+	public void update(CharSequence source, int start) {
+		truncate(Math.min(start, length));
+		append(source, length, source.length());
+	}
+
+	/**
+	 * Appends a single character to this run.
+	 */
+	public void append(char character) {
+		ensureCapacity(length + 1);
+		appendGlyph(character);
+	}
+
+	/**
+	 * Removes all characters after the given length from this run.
+	 */
+	public void truncate(int newLength) {
+		if (newLength < length) {
+			Arrays.fill(glyphs, newLength, length, null);
+			length = newLength;
+			height = 0;
+			for (int index = 0; index < length; index++)
+				height = Math.max(height, CharBuilder.getCharHeight(glyphs[index]));
+		}
+	}
+
+	private void append(CharSequence source, int start, int end) {
+		ensureCapacity(length + end - start);
+		for (int index = start; index < end; index++)
+			appendGlyph(source.charAt(index));
+	}
+
+	private void appendGlyph(char character) {
+		GuiTexture glyph = charBuilder.getTexture(character, font);
+		chars[length] = character;
+		glyphs[length] = glyph;
+		offsets[length + 1] = offsets[length] + CharBuilder.getCharWidth(glyph);
+		height = Math.max(height, CharBuilder.getCharHeight(glyph));
+		length++;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > glyphs.length) {
+			int newCapacity = Math.max(capacity, Math.max(16, 2 * glyphs.length));
+			chars = Arrays.copyOf(chars, newCapacity);
+			glyphs = Arrays.copyOf(glyphs, newCapacity);
+			offsets = Arrays.copyOf(offsets, newCapacity + 1);
+		}
+	}
+
+	/**
+	 * Renders this run inside the given area of the renderer. The run will be scaled to fit inside the area
+	 * without changing its aspect ratio, and aligned according to the given alignments.
+	 * @param renderer The renderer to render on
+	 * @param color The color of the text
+	 * @param aspectRatio The width of the area divided by its height, as it should appear to the run
+	 */
+	public void render(GuiRenderer renderer, GuiColor color, float minX, float minY, float maxX, float maxY,
+			float aspectRatio, HorAlignment horAlignment, VerAlignment verAlignment) {
+		int width = getWidth();
+		if (width == 0 || height == 0)
+			return;
+		float runAspectRatio = (float) width / height;
+		float relativeWidth;
+		float relativeHeight;
+		if (runAspectRatio > aspectRatio) {
+			relativeWidth = 1;
+			relativeHeight = aspectRatio / runAspectRatio;
+		} else {
+			relativeWidth = runAspectRatio / aspectRatio;
+			relativeHeight = 1;
+		}
+		float areaWidth = maxX - minX;
+		float areaHeight = maxY - minY;
+		float runWidth = relativeWidth * areaWidth;
+		float runHeight = relativeHeight * areaHeight;
+		float startX;
+		if (horAlignment == HorAlignment.LEFT)
+			startX = minX;
+		else if (horAlignment == HorAlignment.MIDDLE)
+			startX = minX + (areaWidth - runWidth) / 2;
+		else
+			startX = maxX - runWidth;
+		float startY;
+
+		// Note that UP means that the text should be at the top of the area
+		if (verAlignment == VerAlignment.UP)
+			startY = maxY - runHeight;
+		else if (verAlignment == VerAlignment.MIDDLE)
+			startY = minY + (areaHeight - runHeight) / 2;
+		else
+			startY = minY;
+		float factor = runWidth / width;
+		for (int index = 0; index < length; index++) {
+			renderer.renderTexture(glyphs[index], color, startX + offsets[index] * factor, startY,
+					startX + offsets[index + 1] * factor, startY + runHeight);
+		}
+	}
+}
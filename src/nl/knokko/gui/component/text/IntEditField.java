@@ -21,20 +21,21 @@ public class IntEditField extends TextEditField {
 
 	@Override
 	public void keyPressed(char character) {
-		if ((character >= '0' && character <= '9') || (text.isEmpty() && character == '-')) {
+		if ((character >= '0' && character <= '9') || (buffer.isEmpty() && character == '-')) {
 			super.keyPressed(character);
 		}
 	}
 	
 	@Override
 	protected void paste(String clipboardContent) {
+		StringBuilder filtered = new StringBuilder(clipboardContent.length());
 		clipboardContent.chars().forEachOrdered(character -> {
-			if ((text.isEmpty() && character == '-') ||
+			if ((filtered.length() == 0 && buffer.isEmpty() && character == '-') ||
 					(character >= '0' && character <= '9')) {
-				this.text += (char) character;
+				filtered.append((char) character);
 			}
 		 });
-		updateTexture();
+		buffer.type(filtered);
 	}
 
 	/**
@@ -24,130 +24,246 @@
 package nl.knokko.gui.component.text;
 
 import java.awt.Graphics2D;
+import java.awt.font.LineMetrics;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.color.SimpleGuiColor;
 import nl.knokko.gui.component.AbstractGuiComponent;
 import nl.knokko.gui.keycode.KeyCode;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.util.FontCache;
+import nl.knokko.gui.util.LineLayout;
+import nl.knokko.gui.util.TextBuffer;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
+/**
+ * A component that shows multiple lines of text that can be edited. The text is stored in a TextBuffer in
+ * which the lines are separated by newline characters.
+ * 
+ * The text area is laid out as if it were an image of IMAGE_WIDTH by IMAGE_HEIGHT pixels that can be
+ * scrolled vertically. Every line gets its own texture, and only the lines that are currently visible will
+ * be rasterized and rendered. The textures of lines that haven't been visible for a while will be evicted,
+ * so the cost of a text area depends on its height rather than the length of its text.
+ */
 public class TextArea extends AbstractGuiComponent {
 	
+	protected static final int IMAGE_WIDTH = 800;
+	protected static final int IMAGE_HEIGHT = 800;
+	
+	/**
+	 * The distance between the top of the text and the baseline of the first line, in pixels
+	 */
+	protected static final int TOP_MARGIN = 40;
+	protected static final int LEFT_MARGIN = IMAGE_WIDTH / 16;
+	
+	/**
+	 * The number of line textures that will be kept in addition to the textures of the visible lines
+	 */
+	private static final int EXTRA_LINE_TEXTURES = 16;
+	
 	protected Properties properties;
 	
-	protected GuiTexture currentTexture;
-	protected String[] currentLines;
-	protected float[] currentTextHeights;
+	protected final TextBuffer buffer;
+	protected final LineLayout layout;
 	
-	protected int typingX;
-	protected int typingY;
+	private final float ascent;
+	private final float descent;
+	private final float lineHeight;
+	private final float paragraphSpacing;
+	
+	private final GuiColor backgroundColor;
+	private final GuiColor borderColor;
+	private final GuiColor textColor;
+	
+	/**
+	 * The textures of the most recently rendered lines, by their text, from least recently used to most
+	 * recently used
+	 */
+	private final Map<String,LineTexture> lineTextures;
+	private int maxLineTextures;
+	
+	/**
+	 * The number of pixels between the top of the text and the top of this text area
+	 */
+	protected float scrollOffset;
+	
+	protected boolean typing;
 
 	public TextArea(Properties properties, String... initialLines) {
 		this.properties = properties;
-		currentLines = initialLines;
-	}
-	
-	/*
-	 * Copied from Troll Wars
-	 * 
-	 * public static BufferedImage createDialogueImage(Color backGround, ImageTexture portrait, DialogueText title, DialogueText[] texts, int[] textHeights){
-		BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g = image.createGraphics();
-		g.setColor(backGround.toAWTColor());
-		g.fillRect(0, 500, 800, 300);
-		g.fillRect(34, 466, 766, 34);
-		g.setColor(java.awt.Color.BLACK);
-		g.drawRect(0, 500, 800, 300);
-		g.drawRect(33, 466, 766, 34);
-		g.drawRect(0, 466, 33, 33);
-		g.drawImage(portrait.getImage(), 1, 467, 32, 32, null);
-		g.setFont(title.getFont());
-		g.setColor(title.getColor().toAWTColor());
-		g.drawString(title.getText(), 40, 494);
-		int textIndex = 0;
-		int y = 540;
-		for(DialogueText text : texts){
-			g.setColor(text.getColor().toAWTColor());
-			g.setFont(text.getFont());
-			if(textHeights != null)
-				textHeights[textIndex] = y;
-			String textLine = text.getText();
-			int lineIndex = 0;
-			for(int length = 0; length + lineIndex < textLine.length(); length++){
-				double width = g.getFontMetrics().getStringBounds(textLine.substring(lineIndex, lineIndex + length), g).getWidth();
-				if(width > 700){
-					//dont break words, that's ugly
-					for(int i = length + lineIndex; i > 0; i--){
-						if(textLine.charAt(i) == ' '){
-							length = i + 1 - lineIndex;
-							break;
-						}
-					}
-					g.drawString(textLine.substring(lineIndex, lineIndex + length), 50, y);
-					lineIndex += length;
-					length = 0;
-					y += text.getFont().getSize();
-				}
+		this.buffer = new TextBuffer(String.join("\n", initialLines));
+		this.layout = new LineLayout(buffer, properties.font, IMAGE_WIDTH / 8);
+		buffer.addListener(new TextBuffer.Listener() {
+			
+			@Override
+			public void textChanged(TextBuffer buffer, int start, int removedLength, int insertedLength) {
+				if (state != null)
+					state.invalidate();
 			}
-			g.drawString(textLine.substring(lineIndex), 50, y);
-			y += text.getFont().getSize() * 1.4;
-			textIndex++;
-		}
-		g.dispose();
-		return image;
+			
+			@Override
+			public void cursorMoved(TextBuffer buffer) {
+				if (state != null)
+					state.invalidate();
+			}
+		});
+		
+		LineMetrics metrics = FontCache.getLineMetrics(properties.font, "");
+		this.ascent = metrics.getAscent();
+		this.descent = metrics.getDescent();
+		this.lineHeight = properties.font.getSize();
+		this.paragraphSpacing = 0.4f * lineHeight;
+		this.backgroundColor = new SimpleGuiColor(properties.backgroundColor.getRGB());
+		this.borderColor = new SimpleGuiColor(properties.borderColor.getRGB());
+		this.textColor = new SimpleGuiColor(properties.textColor.getRGB());
+		this.maxLineTextures = EXTRA_LINE_TEXTURES;
+		this.lineTextures = new LinkedHashMap<String,LineTexture>(64, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,LineTexture> eldest) {
+				return size() > maxLineTextures;
+			}
+		};
 	}
+	
+	/**
+	 * @return The buffer that contains the text of this text area
 	 */
+	public TextBuffer getBuffer() {
+		return buffer;
+	}
 	
-	protected void recreateTexture() {
-		int imageWidth = 800;
-		int imageHeight = 800;
-		BufferedImage currentImage = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
-		Graphics2D g = currentImage.createGraphics();
-		g.setColor(properties.backgroundColor);
-		g.fillRect(1, 1, imageWidth - 2, imageHeight - 2);
-		g.setColor(properties.borderColor);
-		g.drawRect(0, 0, imageWidth, imageHeight);
-		int textIndex = 0;
-		int y = 40;
-		g.setColor(properties.textColor);
-		g.setFont(properties.font);
-		currentTextHeights = new float[currentLines.length];
-		for(String line : currentLines){
-			currentTextHeights[textIndex] = (float) y / currentImage.getWidth();
-			int lineIndex = 0;
-			for(int length = 0; length + lineIndex < line.length(); length++){
-				double width = g.getFontMetrics().getStringBounds(line.substring(lineIndex, lineIndex + length), g).getWidth();
-				if(width > imageWidth / 8){
-					//dont break words, that's ugly
-					for(int i = length + lineIndex; i > 0; i--){
-						if(line.charAt(i) == ' '){
-							length = i + 1 - lineIndex;
-							break;
-						}
-					}
-					g.drawString(line.substring(lineIndex, lineIndex + length), imageWidth / 16, y);
-					lineIndex += length;
-					length = 0;
-					y += properties.font.getSize();
-				}
+	public String getText() {
+		return buffer.toString();
+	}
+	
+	/**
+	 * @return The lines of the text of this text area
+	 */
+	public List<String> getLines() {
+		List<String> lines = new ArrayList<String>();
+		int lineStart = 0;
+		int length = buffer.length();
+		for (int index = 0; index < length; index++) {
+			if (buffer.charAt(index) == '\n') {
+				lines.add(buffer.substring(lineStart, index));
+				lineStart = index + 1;
 			}
-			g.drawString(line.substring(lineIndex), imageWidth / 16, y);
-			y += properties.font.getSize() * 1.4;
-			textIndex++;
 		}
-		g.dispose();
-		currentTexture = state.getWindow().getTextureLoader().loadTexture(currentImage);
+		lines.add(buffer.substring(lineStart, length));
+		return lines;
+	}
+	
+	/**
+	 * @return The index of the first character of the line that contains the given position
+	 */
+	protected int getLineStart(int position) {
+		while (position > 0 && buffer.charAt(position - 1) != '\n')
+			position--;
+		return position;
+	}
+	
+	/**
+	 * @return The index of the newline character at the end of the line that contains the given position,
+	 * or the length of the buffer if it is the last line
+	 */
+	protected int getLineEnd(int position) {
+		int length = buffer.length();
+		while (position < length && buffer.charAt(position) != '\n')
+			position++;
+		return position;
+	}
+	
+	/**
+	 * @return The y-coordinate of the baseline of the given line of the layout, in pixels from the top of
+	 * the text
+	 */
+	protected float getBaseline(int line) {
+		return TOP_MARGIN + line * lineHeight + layout.getParagraphOfLine(line) * paragraphSpacing;
+	}
+	
+	/**
+	 * @return The height of the entire text, in pixels
+	 */
+	protected float getContentHeight() {
+		return getBaseline(layout.getLineCount() - 1) + descent + TOP_MARGIN;
+	}
+	
+	/**
+	 * @return The index of the first line of the layout whose bottom is below the given y-coordinate
+	 */
+	protected int getLineAt(float y) {
+		int low = 0;
+		int high = layout.getLineCount() - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getBaseline(middle) + descent <= y)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	
+	protected float getMaxScrollOffset() {
+		return Math.max(0, getContentHeight() - IMAGE_HEIGHT);
+	}
+	
+	protected void setScrollOffset(float newOffset) {
+		newOffset = Math.max(0, Math.min(newOffset, getMaxScrollOffset()));
+		if (newOffset != scrollOffset) {
+			scrollOffset = newOffset;
+			state.invalidate();
+		}
+	}
+	
+	/**
+	 * Scrolls just enough to make the line of the cursor visible.
+	 */
+	protected void scrollToCursor() {
+		float baseline = getBaseline(layout.getLineOfOffset(buffer.getCursor()));
+		if (baseline - ascent < scrollOffset)
+			setScrollOffset(baseline - ascent);
+		else if (baseline + descent > scrollOffset + IMAGE_HEIGHT)
+			setScrollOffset(baseline + descent - IMAGE_HEIGHT);
+	}
+	
+	private LineTexture getLineTexture(String line) {
+		LineTexture texture = lineTextures.get(line);
+		if (texture == null) {
+			texture = new LineTexture(line);
+			lineTextures.put(line, texture);
+		}
+		return texture;
+	}
+	
+	/**
+	 * Drops the textures of all lines, so that they will be rasterized again when they are rendered.
+	 * @deprecated The lines are rasterized when they become visible, so there is no texture to recreate
+	 * anymore. The lines can be read with getLines() and edited with getBuffer().
+	 */
+	@Deprecated
+	protected void recreateTexture() {
+		lineTextures.clear();
+		if (state != null)
+			state.invalidate();
 	}
 	
 	protected boolean isTyping() {
-		return typingX != -1;
+		return typing;
 	}
 
 	@Override
 	public void init() {
-		recreateTexture();
-		typingX = -1;
+		typing = false;
 	}
 
 	@Override
@@ -155,81 +271,186 @@ public class TextArea extends AbstractGuiComponent {
 
 	@Override
 	public void render(GuiRenderer renderer) {
-		renderer.renderTexture(currentTexture, 0, 0, 1, 1);
-		if(isTyping()) {
-			//TODO render the current place to type
+		float pixelX = 1f / IMAGE_WIDTH;
+		float pixelY = 1f / IMAGE_HEIGHT;
+		renderer.clear(backgroundColor);
+		renderer.fill(borderColor, 0, 0, 1, pixelY);
+		renderer.fill(borderColor, 0, 0, pixelX, 1);
+		renderer.fill(borderColor, 0, 1 - pixelY, 1, 1);
+		renderer.fill(borderColor, 1 - pixelX, 0, 1, 1);
+		
+		// Deleting text may have made the current scroll offset too large
+		scrollOffset = Math.min(scrollOffset, getMaxScrollOffset());
+
+		int firstLine = getLineAt(scrollOffset);
+		int lastLine = getLineAt(scrollOffset + IMAGE_HEIGHT);
+		
+		// Keep the textures of the visible lines and some more, so that scrolling back is cheap. This must
+		// be set before the lines are rendered, or the textures of visible lines could be evicted.
+		maxLineTextures = lastLine - firstLine + 1 + EXTRA_LINE_TEXTURES;
+		for (int line = firstLine; line <= lastLine; line++) {
+			float top = getBaseline(line) - ascent - scrollOffset;
+			if (top >= IMAGE_HEIGHT)
+				break;
+			String text = layout.getLine(line);
+			if (!text.isEmpty())
+				getLineTexture(text).render(renderer, top);
+		}
+		
+		if (isTyping()) {
+			int cursor = buffer.getCursor();
+			int cursorLine = layout.getLineOfOffset(cursor);
+			float top = getBaseline(cursorLine) - ascent - scrollOffset;
+			float bottom = top + ascent + descent;
+			if (top >= 0 && bottom <= IMAGE_HEIGHT) {
+				float x = (LEFT_MARGIN + layout.getX(cursor)) * pixelX;
+				renderer.fill(textColor, x, 1 - bottom * pixelY, x + 2 * pixelX, 1 - top * pixelY);
+			}
 		}
 	}
+	
+	/**
+	 * @return The index in the buffer that is closest to the given point of this text area
+	 */
+	protected int getOffsetAt(float x, float y) {
+		int line = getLineAt((1 - y) * IMAGE_HEIGHT + scrollOffset);
+		int offset = layout.getLineStart(line);
+		int lineEnd = layout.getLineEnd(line);
+		float remaining = x * IMAGE_WIDTH - LEFT_MARGIN;
+		while (offset < lineEnd) {
+			float advance = layout.getAdvance(buffer.charAt(offset));
+			if (remaining < advance / 2)
+				break;
+			remaining -= advance;
+			offset++;
+		}
+		return offset;
+	}
 
 	@Override
 	public void click(float x, float y, int button) {
-		// TODO Calculate the new values for typingX and typingY
+		typing = true;
+		state.notifyActive();
+		buffer.setCursor(getOffsetAt(x, y));
 	}
 
 	@Override
 	public void clickOut(int button) {
-		typingX = -1;
+		if (typing) {
+			typing = false;
+			state.invalidate();
+		}
 	}
 
 	@Override
 	public boolean scroll(float amount) {
-		// TODO Enable scrolling
-		return false;
+		float previousOffset = scrollOffset;
+		setScrollOffset(scrollOffset - amount * IMAGE_HEIGHT);
+		return scrollOffset != previousOffset;
 	}
 
 	@Override
 	public void keyPressed(int keyCode) {
 		if(isTyping()) {
-			String line = currentLines[typingY];
-			if(keyCode == KeyCode.KEY_BACKSPACE && typingX > 0) {
-				currentLines[typingY] = line.substring(0, typingX - 1) + line.substring(typingX, line.length());
-				recreateTexture();
+			int cursor = buffer.getCursor();
+			if(keyCode == KeyCode.KEY_BACKSPACE) {
+				buffer.backspace();
 			}
-			else if(keyCode == KeyCode.KEY_DELETE && typingX < line.length() - 1) {
-				currentLines[typingY] = line.substring(0, typingX) + line.substring(typingX + 1, line.length());
-				recreateTexture();
+			else if(keyCode == KeyCode.KEY_DELETE) {
+				buffer.deleteForward();
 			}
 			else if(keyCode == KeyCode.KEY_ENTER) {
-				String[] newLines = new String[currentLines.length + 1];
-				System.arraycopy(currentLines, 0, newLines, 0, typingY + 1);
-				System.arraycopy(currentLines, typingY + 1, newLines, typingY + 2, currentLines.length - typingY - 1);
-				newLines[typingY + 1] = "";
-				currentLines = newLines;
-				typingY++;
-				typingX = 0;
-				recreateTexture();
+				buffer.type('\n');
 			}
-			else if(keyCode == KeyCode.KEY_LEFT && typingX > 0) {
-				typingX--;
+			else if(keyCode == KeyCode.KEY_LEFT && cursor > 0) {
+				buffer.setCursor(cursor - 1);
 			}
-			else if(keyCode == KeyCode.KEY_RIGHT && typingX < line.length()) {
-				typingX++;
+			else if(keyCode == KeyCode.KEY_RIGHT && cursor < buffer.length()) {
+				buffer.setCursor(cursor + 1);
 			}
-			else if(keyCode == KeyCode.KEY_DOWN && typingY < currentLines.length - 1) {
-				typingY++;
-				if(typingX > currentLines[typingY].length()) {
-					typingX = currentLines[typingY].length();
+			else if(keyCode == KeyCode.KEY_DOWN) {
+				int lineEnd = getLineEnd(cursor);
+				if(lineEnd < buffer.length()) {
+					int column = cursor - getLineStart(cursor);
+					int nextLineStart = lineEnd + 1;
+					buffer.setCursor(Math.min(nextLineStart + column, getLineEnd(nextLineStart)));
 				}
 			}
-			else if(keyCode == KeyCode.KEY_UP && typingY > 0) {
-				typingY--;
+			else if(keyCode == KeyCode.KEY_UP) {
+				int lineStart = getLineStart(cursor);
+				if(lineStart > 0) {
+					int column = cursor - lineStart;
+					int previousLineStart = getLineStart(lineStart - 1);
+					buffer.setCursor(Math.min(previousLineStart + column, lineStart - 1));
+				}
 			}
+			scrollToCursor();
 		}
 	}
 
 	@Override
 	public void keyPressed(char character) {
 		if(isTyping()) {
-			if(typingX == currentLines[typingY].length()) {
-				currentLines[typingY] += character;
-			}
-			else {
-				String line = currentLines[typingY];
-				currentLines[typingY] = line.substring(0, typingX) + character + line.substring(typingX);
-			}
+			buffer.type(character);
+			scrollToCursor();
 		}
 	}
 
 	@Override
 	public void keyReleased(int keyCode) {}
-}
\ No newline at end of file
+	
+	/**
+	 * The texture of a single line, rasterized with the font of the text area
+	 */
+	private class LineTexture {
+		
+		private final BufferedImage image;
+		private final GuiTexture texture;
+		
+		/**
+		 * The texture of the part of this line that was visible during the last render where it was cut off,
+		 * and the number of rows of pixels that were cut off at the top and bottom
+		 */
+		private GuiTexture croppedTexture;
+		private int croppedTop;
+		private int croppedBottom;
+		
+		private LineTexture(String line) {
+			int width = Math.max(1, (int) Math.ceil(FontCache.getAdvance(properties.font, line)));
+			int height = Math.max(1, (int) Math.ceil(ascent + descent));
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			g.setColor(properties.textColor);
+			g.setFont(properties.font);
+			g.drawString(line, 0, ascent);
+			g.dispose();
+			texture = state.getWindow().getTextureLoader().loadTexture(image);
+		}
+		
+		/**
+		 * Renders this line with its top at the given y-coordinate, in pixels from the top of this text area.
+		 * The rows of pixels outside this text area will be cut off.
+		 */
+		private void render(GuiRenderer renderer, float top) {
+			int height = image.getHeight();
+			int cutTop = Math.max(0, (int) Math.ceil(-top));
+			int cutBottom = Math.max(0, (int) Math.ceil(top + height - IMAGE_HEIGHT));
+			if (cutTop + cutBottom >= height)
+				return;
+			GuiTexture visiblePart = texture;
+			if (cutTop > 0 || cutBottom > 0) {
+				if (croppedTexture == null || cutTop != croppedTop || cutBottom != croppedBottom) {
+					croppedTexture = state.getWindow().getTextureLoader().loadTexture(image, 0, cutTop, image.getWidth(), height - cutBottom);
+					croppedTop = cutTop;
+					croppedBottom = cutBottom;
+				}
+				visiblePart = croppedTexture;
+			}
+			float minX = (float) LEFT_MARGIN / IMAGE_WIDTH;
+			float maxX = (float) (LEFT_MARGIN + image.getWidth()) / IMAGE_WIDTH;
+			float minY = 1 - (top + height - cutBottom) / IMAGE_HEIGHT;
+			float maxY = 1 - (top + cutTop) / IMAGE_HEIGHT;
+			renderer.renderTexture(visiblePart, minX, minY, maxX, maxY);
+		}
+	}
+}
@@ -45,11 +45,12 @@ public class TextButton extends TextComponent {
 	@Override
 	protected void updateTexture(){
 		super.updateTexture();
-		hoverTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, hoverProperties));
+		requestTexture(hoverProperties, () -> hoverProperties, newTexture -> hoverTexture = newTexture);
 	}
 	
 	@Override
 	public void render(GuiRenderer renderer){
+		renderer.trackHover(state);
 		if(state.isMouseOver())
 			renderer.renderTexture(hoverTexture, 0, 0, 1, 1);
 		else
@@ -58,8 +59,7 @@ public class TextButton extends TextComponent {
 	
 	public void setHoverProperties(TextBuilder.Properties newProperties){
 		hoverProperties = newProperties;
-		hoverTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, hoverProperties));
-		state.getWindow().markChange();
+		requestTexture(hoverProperties, () -> hoverProperties, newTexture -> hoverTexture = newTexture);
 	}
 	
 	@Override
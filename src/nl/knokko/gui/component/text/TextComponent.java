@@ -29,6 +29,8 @@ import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import nl.knokko.gui.component.AbstractGuiComponent;
 import nl.knokko.gui.render.GuiRenderer;
@@ -58,8 +60,28 @@ public class TextComponent extends AbstractGuiComponent implements TextShowingCo
 	}
 
 	protected void updateTexture() {
-		texture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, properties));
-		state.getWindow().markChange();
+		requestTexture(properties, () -> properties, newTexture -> texture = newTexture);
+	}
+	
+	/**
+	 * Requests the texture for the current text with the given properties from the text texture cache of the
+	 * window. If the cache is in async mode, the receiver will be called later, but only if the text and
+	 * properties of this component haven't changed in the meantime. Until then, this component will keep
+	 * using its previous texture.
+	 * 
+	 * @param requestedProperties The properties to create the texture with
+	 * @param currentProperties Gives the properties the texture should have when it arrives
+	 * @param receiver Will be given the texture
+	 */
+	protected void requestTexture(TextBuilder.Properties requestedProperties, 
+			Supplier<TextBuilder.Properties> currentProperties, Consumer<GuiTexture> receiver) {
+		String requestedText = text;
+		state.getWindow().getTextTextureCache().request(requestedText, requestedProperties, newTexture -> {
+			if (requestedText.equals(getText()) && requestedProperties == currentProperties.get()) {
+				receiver.accept(newTexture);
+				state.invalidate();
+			}
+		});
 	}
 
 	@Override
@@ -130,12 +152,12 @@ public class TextComponent extends AbstractGuiComponent implements TextShowingCo
 
 	@Override
 	public TextShowingComponent.Pair getShowingComponent(String text) {
-		return text.equals(this.text) ? new TextShowingComponent.Pair(this, new Point2D.Float(state.getMidX(), state.getMidY())) : null;
+		return text.equals(getText()) ? new TextShowingComponent.Pair(this, new Point2D.Float(state.getMidX(), state.getMidY())) : null;
 	}
 
 	@Override
 	public Collection<TextShowingComponent.Pair> getShowingComponents(String text) {
-		if (text.equals(this.text)) {
+		if (text.equals(getText())) {
 			Collection<TextShowingComponent.Pair> result = new ArrayList<TextShowingComponent.Pair>(1);
 			result.add(new TextShowingComponent.Pair(this, new Point2D.Float(state.getMidX(), state.getMidY())));
 			return result;
@@ -23,6 +23,8 @@
  *******************************************************************************/
 package nl.knokko.gui.component.text;
 
+import java.awt.Dimension;
+import java.awt.HeadlessException;
 import java.awt.Toolkit;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
@@ -35,193 +37,276 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 
-import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.color.SimpleGuiColor;
+import nl.knokko.gui.component.FocusableComponent;
 import nl.knokko.gui.keycode.KeyCode;
 import nl.knokko.gui.mousecode.MouseCode;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.testing.EditableComponent;
 import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.util.FontCache;
+import nl.knokko.gui.util.TextBuffer;
 import nl.knokko.gui.util.TextBuilder;
 import nl.knokko.gui.util.TextBuilder.Properties;
+import nl.knokko.gui.window.FocusManager;
 
-public class TextEditField extends TextComponent implements EditableComponent {
+/**
+ * A component that shows a line of text that the user can edit after clicking on it. The text is stored in
+ * a TextBuffer, so editing long texts stays cheap. The text field inherited from TextComponent is only
+ * updated when the textures are created, so subclasses should use getText() or the buffer instead.
+ */
+public class TextEditField extends TextComponent implements EditableComponent, FocusableComponent {
+	
+	protected final TextBuffer buffer;
 	
 	protected GuiTexture activeTexture;
 	protected Properties activeProperties;
 	
-	protected Point2D.Float tabSwitchPoint;
-	
 	protected boolean active;
+	
+	/**
+	 * The characters of the text while this edit field is being edited incrementally, or null if it hasn't
+	 * been edited incrementally yet
+	 */
+	protected GlyphRun glyphRun;
+	
+	/**
+	 * The index of the first character that changed since the glyph run was updated, or Integer.MAX_VALUE
+	 * if no character changed
+	 */
+	private int glyphsChangedFrom;
+	
+	/**
+	 * True while setDirectText is changing the buffer, to prevent the textures from being updated
+	 */
+	private boolean directChange;
+	
+	private GuiColor activeBackgroundColor;
+	private GuiColor activeBorderColor;
+	private GuiColor activeTextColor;
+	
+	/**
+	 * The width of the text area of the active texture divided by its height, in pixels of the texture. The
+	 * glyph run is rendered with this aspect ratio, so that it is stretched in the same way as the textures
+	 * of TextBuilder.
+	 */
+	private float glyphAspectRatio;
+	
+	/**
+	 * True if the text has been changed incrementally since the passive texture was created
+	 */
+	private boolean passiveTextureOutdated;
 
 	public TextEditField(String text, Properties passiveProperties, Properties activeProperties) {
 		super(text, passiveProperties);
 		this.activeProperties = activeProperties;
+		this.buffer = new TextBuffer(text);
+		this.glyphsChangedFrom = Integer.MAX_VALUE;
+		buffer.addListener((changedBuffer, start, removedLength, insertedLength) -> {
+			glyphsChangedFrom = Math.min(glyphsChangedFrom, start);
+			if (!directChange)
+				textChanged();
+		});
+	}
+	
+	/**
+	 * @return The buffer that contains the text of this edit field
+	 */
+	public TextBuffer getBuffer(){
+		return buffer;
+	}
+	
+	@Override
+	public String getText(){
+		return buffer.toString();
 	}
 	
 	@Override
-	public void update() {
-		super.update();
-		if (tabSwitchPoint != null) {
-			state.getWindow().getMainComponent().click(
-					tabSwitchPoint.x, tabSwitchPoint.y, MouseCode.BUTTON_LEFT
-			);
-			tabSwitchPoint = null;
+	public void setText(String newText){
+		buffer.setText(newText);
+	}
+	
+	@Override
+	public void setDirectText(String newText){
+		directChange = true;
+		try {
+			buffer.setText(newText);
+		} finally {
+			directChange = false;
 		}
 	}
 	
 	@Override
 	public void render(GuiRenderer renderer){
-		if(active)
-			renderer.renderTexture(activeTexture, 0, 0, 1, 1);
-		else
+		if(active) {
+			if(editIncrementally())
+				renderGlyphs(renderer);
+			else
+				renderer.renderTexture(activeTexture, 0, 0, 1, 1);
+		} else
 			super.render(renderer);
 	}
 	
+	/**
+	 * Renders the text of this edit field with the character textures of the glyph run, on top of the
+	 * background and border of the active properties.
+	 */
+	protected void renderGlyphs(GuiRenderer renderer){
+		Properties p = activeProperties;
+		if(glyphRun == null || glyphRun.getFont() != p.font) {
+			glyphRun = new GlyphRun(state.getWindow().getCharBuilder(), p.font);
+			activeBackgroundColor = new SimpleGuiColor(p.backgroundColor.getRGB());
+			activeBorderColor = new SimpleGuiColor(p.borderColor.getRGB());
+			activeTextColor = new SimpleGuiColor(p.textColor.getRGB());
+			glyphsChangedFrom = 0;
+		}
+		float outerX = p.borderX + p.marginX;
+		float outerY = p.borderY + p.marginY;
+		if(glyphsChangedFrom != Integer.MAX_VALUE) {
+			glyphRun.update(buffer, glyphsChangedFrom);
+			glyphsChangedFrom = Integer.MAX_VALUE;
+			
+			// The string bounds of a font all have the same height, so only the width depends on the text
+			Dimension imageSize = TextBuilder.getImageSize(glyphRun.getWidth(), 
+					FontCache.getLineMetrics(p.font, "").getHeight(), p);
+			glyphAspectRatio = ((1 - 2 * outerX) * imageSize.width) / ((1 - 2 * outerY) * imageSize.height);
+		}
+		
+		renderer.clear(activeBackgroundColor);
+		renderer.fill(activeBorderColor, 0, 0, 1, p.borderY);
+		renderer.fill(activeBorderColor, 0, 0, p.borderX, 1);
+		renderer.fill(activeBorderColor, 0, 1 - p.borderY, 1, 1);
+		renderer.fill(activeBorderColor, 1 - p.borderX, 0, 1, 1);
+		
+		glyphRun.render(renderer, activeTextColor, outerX, outerY, 1 - outerX, 1 - outerY, glyphAspectRatio, 
+				p.horAlignment, p.verAlignment);
+	}
+	
+	/**
+	 * Determines whether this edit field should render its text from the character textures of the
+	 * CharBuilder while it is active. If so, typing will only lay out the changed characters instead of
+	 * creating new textures, and the passive texture will be created again when this edit field becomes
+	 * inactive. If not, both textures will be created again after every change.
+	 * @return true to edit incrementally, false to create the textures after every change
+	 */
+	protected boolean editIncrementally(){
+		return true;
+	}
+	
 	@Override
 	protected void updateTexture(){
+		text = buffer.toString();
+		passiveTextureOutdated = false;
 		updatePassiveTexture();
-		updateActiveTexture();
+		if(!editIncrementally())
+			updateActiveTexture();
+	}
+	
+	/**
+	 * Will be called after the text in the buffer has been changed. While the text is being edited
+	 * incrementally, this will only invalidate the state. Otherwise, the textures will be created again.
+	 */
+	protected void textChanged(){
+		if(active && editIncrementally()) {
+			passiveTextureOutdated = true;
+			updateGlyphs();
+		} else {
+			updateTexture();
+		}
+	}
+	
+	/**
+	 * Will be called after the text has been changed while this edit field is being edited incrementally.
+	 * The glyph run will be updated during the next render.
+	 */
+	protected void updateGlyphs(){
+		state.invalidate();
 	}
 	
 	public void setActiveProperties(Properties newProperties){
 		activeProperties = newProperties;
-		updateActiveTexture();
+		if(editIncrementally()) {
+			glyphRun = null;
+			state.invalidate();
+		} else
+			updateActiveTexture();
 	}
 	
 	protected void updatePassiveTexture(){
-		texture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, properties));
-		state.getWindow().markChange();
+		requestTexture(properties, () -> properties, newTexture -> texture = newTexture);
 	}
 	
 	protected void updateActiveTexture(){
-		activeTexture = state.getWindow().getTextureLoader().loadTexture(TextBuilder.createTexture(text, activeProperties));
-		state.getWindow().markChange();
+		requestTexture(activeProperties, () -> activeProperties, newTexture -> activeTexture = newTexture);
 	}
 	
 	@Override
 	public void click(float x, float y, int button){
-		if(button == MouseCode.BUTTON_LEFT) {
-			active = !active;
-			state.getWindow().markChange();
-		}
+		if(button == MouseCode.BUTTON_LEFT)
+			setActive(!active);
 	}
 	
 	@Override
 	public void clickOut(int button){
-		active = false;
-		state.getWindow().markChange();
+		setActive(false);
+	}
+	
+	/**
+	 * Activates or deactivates this edit field and tells the focus manager of the window about it.
+	 */
+	protected void setActive(boolean newActive) {
+		if (active != newActive) {
+			active = newActive;
+			FocusManager focusManager = state.getWindow().getFocusManager();
+			if (active) {
+				state.notifyActive();
+				focusManager.setFocused(this);
+			} else {
+				focusManager.clearFocus(this);
+				if (passiveTextureOutdated)
+					updateTexture();
+			}
+			state.invalidate();
+		}
+	}
+	
+	/**
+	 * Edit fields consume all keys while they are active, except escape and enter, so that menus can still
+	 * respond to those.
+	 */
+	@Override
+	public boolean consumesKey(int keyCode) {
+		return keyCode != KeyCode.KEY_ESCAPE && keyCode != KeyCode.KEY_ENTER;
 	}
 	
 	@Override
 	public void keyPressed(char character){
 		if(active && !state.getWindow().getInput().isKeyDown(KeyCode.KEY_CONTROL)
 				&& character != '\t'){
-			text += character;
-			updateTexture();
+			buffer.type(character);
 		}
 	}
 	
 	@Override
 	public void keyPressed(int key){
-		if(key == KeyCode.KEY_ESCAPE || key == KeyCode.KEY_ENTER) {
-			active = false;
-			state.getWindow().markChange();
-		}
+		if((key == KeyCode.KEY_ESCAPE || key == KeyCode.KEY_ENTER) && active)
+			setActive(false);
 		if(active){
 			if (state.getWindow().getInput().isKeyDown(KeyCode.KEY_CONTROL)) {
 				if (key == KeyCode.KEY_V) {
 					String clipboardText = getClipboardText();
 					paste(clipboardText);
-				} else if (key == KeyCode.KEY_C && !text.isEmpty()) {
-					setClipboardText(text);
+				} else if (key == KeyCode.KEY_C && !buffer.isEmpty()) {
+					setClipboardText(buffer.toString());
 				} else if (key == KeyCode.KEY_X) {
-					setClipboardText(text);
-					text = "";
-					updateTexture();
-				}
-			} else if(key == KeyCode.KEY_BACKSPACE && text.length() > 0){
-				text = text.substring(0, text.length() - 1);
-				updateTexture();
-			} else if(key == KeyCode.KEY_DELETE && text.length() > 0){
-				text = text.substring(0);
-				updateTexture();
-			} else if (key == KeyCode.KEY_TAB) {
-				GuiComponent mainComponent = state.getWindow().getMainComponent();
-				if (mainComponent instanceof EditableComponent) {
-					
-					EditableComponent currentMenu = (EditableComponent) mainComponent;
-					Collection<EditableComponent.Pair> pairs = currentMenu.getEditableLocations();
-					EditableComponent.Pair bestPair = null;
-					
-					// Biggest midY is most important
-					// Then biggest midX
-					
-					if (state.getWindow().getInput().isKeyDown(KeyCode.KEY_SHIFT)) {
-						
-						// Go to previous edit field
-						for (EditableComponent.Pair pair : pairs) {
-							if (pair.getLocation().y >= state.getMidY()) {
-								
-								boolean isCandidate = false;
-								if (pair.getLocation().y == state.getMidY()) {
-									isCandidate = pair.getLocation().x < state.getMidX();
-								} else {
-									isCandidate = true;
-								}
-								
-								if (isCandidate) {
-									if (bestPair == null) {
-										bestPair = pair;
-									} else {
-										if (pair.getLocation().y < bestPair.getLocation().y) {
-											bestPair = pair;
-										} else if (pair.getLocation().y == bestPair.getLocation().y) {
-											if (pair.getLocation().x > bestPair.getLocation().x) {
-												bestPair = pair;
-											}
-										}
-									}
-								}
-							}
-						}
-						
-						if (bestPair != null) {
-							tabSwitchPoint = bestPair.getLocation();
-						}
-					} else {
-						
-						// Go to next edit field
-						for (EditableComponent.Pair pair : pairs) {
-							if (pair.getLocation().y <= state.getMidY()) {
-								
-								boolean isCandidate = false;
-								if (pair.getLocation().y == state.getMidY()) {
-									isCandidate = pair.getLocation().x > state.getMidX();
-								} else {
-									isCandidate = true;
-								}
-								
-								if (isCandidate) {
-									if (bestPair == null) {
-										bestPair = pair;
-									} else {
-										if (pair.getLocation().y > bestPair.getLocation().y) {
-											bestPair = pair;
-										} else if (pair.getLocation().y == bestPair.getLocation().y) {
-											if (pair.getLocation().x < bestPair.getLocation().x) {
-												bestPair = pair;
-											}
-										}
-									}
-								}
-							}
-						}
-						
-						if (bestPair != null) {
-							tabSwitchPoint = bestPair.getLocation();
-						}
-					}
+					setClipboardText(buffer.toString());
+					buffer.setText("");
 				}
+			} else if(key == KeyCode.KEY_BACKSPACE){
+				buffer.backspace();
+			} else if(key == KeyCode.KEY_DELETE){
+				buffer.deleteForward();
 			}
 		}
 	}
@@ -229,15 +314,26 @@ public class TextEditField extends TextComponent implements EditableComponent {
 	protected void paste(String clipboardText) {
 		if (clipboardText != null) {
 			clipboardText = clipboardText.replace("\n", "").replace("\r", "");
-			text += clipboardText;
+			buffer.type(clipboardText);
 		} else {
-			text += "Can't paste";
+			buffer.type("Can't paste");
+		}
+	}
+	
+	/**
+	 * @return The system clipboard, or null if there is no system clipboard (for instance because the
+	 * application is running in headless mode)
+	 */
+	private static Clipboard getSystemClipboard() {
+		try {
+			return Toolkit.getDefaultToolkit().getSystemClipboard();
+		} catch (HeadlessException ex) {
+			return null;
 		}
-		updateTexture();
 	}
 	
 	protected String getClipboardText() {
-		Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+		Clipboard clipboard = getSystemClipboard();
 		if (clipboard != null) {
 			try {
 				Transferable clipboardContent = clipboard.getContents(this);
@@ -260,7 +356,7 @@ public class TextEditField extends TextComponent implements EditableComponent {
 	}
 	
 	protected void setClipboardText(String text) {
-		Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+		Clipboard clipboard = getSystemClipboard();
 		/*
 		 * It is possible that this method returns null, for instance when the
 		 * operating system doesn't support a clipboard. If that is the case,
@@ -279,18 +375,14 @@ public class TextEditField extends TextComponent implements EditableComponent {
 		}
 	}
 	
+	@Override
 	public void setFocus() {
-		if (!active) {
-			active = true;
-			state.getWindow().markChange();
-		}
+		setActive(true);
 	}
 	
+	@Override
 	public void loseFocus() {
-		if (active) {
-			active = false;
-			state.getWindow().markChange();
-		}
+		setActive(false);
 	}
 
 	@Override
@@ -25,6 +25,7 @@ package nl.knokko.gui.component.text.dynamic;
 
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.util.Condition;
+import nl.knokko.gui.util.ConditionTracker;
 import nl.knokko.gui.util.TextBuilder.Properties;
 
 public class DynamicActivatableTextButton extends DynamicTextButton {
@@ -32,6 +33,11 @@ public class DynamicActivatableTextButton extends DynamicTextButton {
 	protected SingleText activeText;
 	
 	protected Condition activeCondition;
+	
+	/**
+	 * Tracks the active condition, to invalidate this component when it changes
+	 */
+	protected final ConditionTracker activeConditionTracker = new ConditionTracker();
 
 	public DynamicActivatableTextButton(String text, Properties props, Properties hoverProps, 
 			Properties activeProps, Runnable clickAction, Condition activeCondition) {
@@ -39,6 +45,13 @@ public class DynamicActivatableTextButton extends DynamicTextButton {
 		activeText = new SingleText(text, activeProps);
 		this.activeCondition = activeCondition;
 	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (activeConditionTracker.changed(activeCondition))
+			state.invalidate();
+	}
 	
 	@Override
 	public void init() {
@@ -56,6 +56,7 @@ public class DynamicTextButton extends DynamicTextComponent {
 	
 	@Override
 	public void render(GuiRenderer renderer) {
+		renderer.trackHover(state);
 		if (state.isMouseOver())
 			hoverText.render(renderer);
 		else
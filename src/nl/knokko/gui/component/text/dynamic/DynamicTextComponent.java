@@ -102,6 +102,7 @@ public class DynamicTextComponent extends AbstractGuiComponent implements TextSh
 		
 		private GuiColor borderColor;
 		private GuiColor backgroundColor;
+		private GuiColor textColor;
 		
 		private GuiTexture[] textures;
 		private float[] xCoords;
@@ -133,8 +134,8 @@ public class DynamicTextComponent extends AbstractGuiComponent implements TextSh
 			textures = new GuiTexture[text.length()];
 			int totalWidth = 0;
 			for (int index = 0; index < textures.length; index++) {
-				textures[index] = charBuilder.getTexture(text.charAt(index), props.textColor, props.font);
-				totalWidth += textures[index].getWidth();
+				textures[index] = charBuilder.getTexture(text.charAt(index), props.font);
+				totalWidth += CharBuilder.getCharWidth(textures[index]);
 			}
 			if (totalWidth != 0) {
 				xCoords = new float[textures.length + 1];
@@ -142,7 +143,7 @@ public class DynamicTextComponent extends AbstractGuiComponent implements TextSh
 				float widthFactor = 1 - 2 * props.borderX - 2 * props.marginX;
 				for (int index = 0; index < textures.length; index++) {
 					xCoords[index] = x;
-					x += ((float) textures[index].getWidth() / totalWidth) * widthFactor;
+					x += ((float) CharBuilder.getCharWidth(textures[index]) / totalWidth) * widthFactor;
 					xCoords[index + 1] = x; 
 				}
 			} else {
@@ -150,10 +151,11 @@ public class DynamicTextComponent extends AbstractGuiComponent implements TextSh
 			}
 			backgroundColor = new SimpleGuiColor(props.backgroundColor.getRGB());
 			borderColor = new SimpleGuiColor(props.borderColor.getRGB());
+			textColor = new SimpleGuiColor(props.textColor.getRGB());
 			minTextY = props.borderY + props.marginY;
 			maxTextY = 1 - minTextY;
 			if (state != null) {
-				state.getWindow().markChange();
+				state.invalidate();
 			}
 		}
 		
@@ -165,7 +167,7 @@ public class DynamicTextComponent extends AbstractGuiComponent implements TextSh
 			renderer.fill(borderColor, 1 - props.borderX, 0, 1, 1);
 			if (xCoords != null) {
 				for (int index = 0; index < textures.length; index++)
-					renderer.renderTexture(textures[index], xCoords[index], minTextY, xCoords[index + 1], maxTextY);
+					renderer.renderTexture(textures[index], textColor, xCoords[index], minTextY, xCoords[index + 1], maxTextY);
 			}
 		}
 	}
@@ -26,7 +26,8 @@ package nl.knokko.gui.render;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Insets;
-import java.util.List;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -35,14 +36,13 @@ import nl.knokko.gui.color.GuiColor;
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.window.AWTGuiWindow;
 
-import nl.knokko.gui.render.RenderCommand;
-
 public class AWTGuiRenderer extends GuiRenderer {
 	
 	private Graphics g;
 	private final AWTGuiWindow window;
 	
-	private List<RenderCommand> renderCommands;
+	private RenderCommandBuffer renderCommands;
+	private JPanel panel;
 	
 	private int minX;
 	private int minY;
@@ -51,16 +51,30 @@ public class AWTGuiRenderer extends GuiRenderer {
 	private int deltaX;
 	private int deltaY;
 	
+	private int dirtyMinX;
+	private int dirtyMinY;
+	private int dirtyMaxX;
+	private int dirtyMaxY;
+	
+	private final Rectangle commandBounds = new Rectangle();
+	
+	private final TintCache tintCache = new TintCache();
+	
 	public AWTGuiRenderer(AWTGuiWindow window) {
 		this.window = window;
 	}
 	
 	public JPanel createPanel() {
-		return new AWTPanel();
+		panel = new AWTPanel();
+		return panel;
 	}
 	
 	public void set(Graphics graphics, int minX, int minY, int maxX, int maxY){
 		this.g = graphics;
+		setArea(minX, minY, maxX, maxY);
+	}
+	
+	private void setArea(int minX, int minY, int maxX, int maxY) {
 		this.minX = minX;
 		this.minY = minY;
 		//this.maxX = maxX;
@@ -69,6 +83,11 @@ public class AWTGuiRenderer extends GuiRenderer {
 		deltaY = maxY - minY;
 	}
 	
+	private void setArea(JFrame frame) {
+		Insets insets = frame.getInsets();
+		setArea(0, 0, frame.getWidth() - 1 - insets.right - insets.left, frame.getHeight() - 1 - insets.bottom - insets.top);
+	}
+	
 	public void setGraphics(Graphics newGraphics){
 		g = newGraphics;
 	}
@@ -83,6 +102,13 @@ public class AWTGuiRenderer extends GuiRenderer {
 		g.drawImage(texture.getImage(), this.minX + Math.round(deltaX * minX), this.maxY - Math.round(deltaY * maxY), this.minX + Math.round(deltaX * maxX), this.maxY - Math.round(deltaY * minY), texture.getMinX(), texture.getMinY(), texture.getMaxX(), texture.getMaxY(), null);
 	}
 
+	@Override
+	void renderTintedTextureNow(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+		BufferedImage image = tintCache.getTintedImage(texture, tint);
+		if (image != null)
+			g.drawImage(image, this.minX + Math.round(deltaX * minX), this.maxY - Math.round(deltaY * maxY), this.minX + Math.round(deltaX * maxX), this.maxY - Math.round(deltaY * minY), 0, 0, image.getWidth(), image.getHeight(), null);
+	}
+
 	@Override
 	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
 		g.setColor(new Color(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF()));
@@ -97,10 +123,72 @@ public class AWTGuiRenderer extends GuiRenderer {
 		g.fillRect(minX, minY, deltaX, deltaY);
 	}
 	
+	/**
+	 * Instead of repainting the entire window, only the union of the screen areas of the commands that differ
+	 * from the previously painted commands will be repainted.
+	 */
 	@Override
-	void renderNow(List<RenderCommand> renderCommands) {
-		this.renderCommands = renderCommands;
-		window.getFrame().repaint();
+	void renderChanges(RenderCommandBuffer previousCommands, RenderCommandBuffer currentCommands) {
+		boolean repaintAll = renderCommands == null || panel == null;
+		this.renderCommands = currentCommands;
+		if (repaintAll) {
+			window.getFrame().repaint();
+			return;
+		}
+		
+		setArea(window.getFrame());
+		dirtyMinX = Integer.MAX_VALUE;
+		dirtyMinY = Integer.MAX_VALUE;
+		dirtyMaxX = Integer.MIN_VALUE;
+		dirtyMaxY = Integer.MIN_VALUE;
+		
+		int commonSize = Math.min(previousCommands.size(), currentCommands.size());
+		for (int index = 0; index < commonSize; index++) {
+			if (!currentCommands.equals(index, previousCommands, index)) {
+				includeDirty(previousCommands, index);
+				includeDirty(currentCommands, index);
+			}
+		}
+		for (int index = commonSize; index < previousCommands.size(); index++) {
+			includeDirty(previousCommands, index);
+		}
+		for (int index = commonSize; index < currentCommands.size(); index++) {
+			includeDirty(currentCommands, index);
+		}
+		
+		if (dirtyMinX <= dirtyMaxX && dirtyMinY <= dirtyMaxY) {
+			panel.repaint(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX + 1, dirtyMaxY - dirtyMinY + 1);
+		}
+	}
+	
+	private void includeDirty(RenderCommandBuffer commands, int index) {
+		Rectangle bounds = getScreenBounds(commands, index);
+		dirtyMinX = Math.min(dirtyMinX, bounds.x);
+		dirtyMinY = Math.min(dirtyMinY, bounds.y);
+		dirtyMaxX = Math.max(dirtyMaxX, bounds.x + bounds.width - 1);
+		dirtyMaxY = Math.max(dirtyMaxY, bounds.y + bounds.height - 1);
+	}
+	
+	/**
+	 * Determines the area on the panel that the command at the given index can draw on, using the same
+	 * rounding as the draw methods above. The bounds get a margin of 1 pixel to be safe.
+	 */
+	private Rectangle getScreenBounds(RenderCommandBuffer commands, int index) {
+		Rectangle dest = commandBounds;
+		if (commands.getOpcode(index) == RenderCommandBuffer.CLEAR) {
+			dest.setBounds(minX, minY, deltaX + 1, deltaY + 1);
+			return dest;
+		}
+		float minX = commands.getMinX(index);
+		float minY = commands.getMinY(index);
+		float maxX = commands.getMaxX(index);
+		float maxY = commands.getMaxY(index);
+		int screenMinX = this.minX + (int) Math.floor(deltaX * Math.min(minX, maxX)) - 1;
+		int screenMaxX = this.minX + (int) Math.ceil(deltaX * Math.max(minX, maxX)) + 1;
+		int screenMinY = this.maxY - (int) Math.ceil(deltaY * Math.max(minY, maxY)) - 1;
+		int screenMaxY = this.maxY - (int) Math.floor(deltaY * Math.min(minY, maxY)) + 1;
+		dest.setBounds(screenMinX, screenMinY, screenMaxX - screenMinX + 1, screenMaxY - screenMinY + 1);
+		return dest;
 	}
 	
 	private class AWTPanel extends JPanel {
@@ -113,7 +201,14 @@ public class AWTGuiRenderer extends GuiRenderer {
 			Insets insets = frame.getInsets();
 			set(g, 0, 0, frame.getWidth() - 1 - insets.right - insets.left, frame.getHeight() - 1 - insets.bottom - insets.top);
 			if (renderCommands != null) {
-				AWTGuiRenderer.super.renderNow(renderCommands);
+				
+				// Skip the commands that can't affect the area that needs to be repainted
+				Rectangle clip = g.getClipBounds();
+				for (int index = 0; index < renderCommands.size(); index++) {
+					if (clip == null || clip.intersects(getScreenBounds(renderCommands, index))) {
+						renderCommands.execute(index, AWTGuiRenderer.this);
+					}
+				}
 			} else {
 				window.getMainComponent().render(AWTGuiRenderer.this);
 				maybeRenderNow();
@@ -23,21 +23,49 @@
  *******************************************************************************/
 package nl.knokko.gui.render;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.component.state.GuiComponentState;
 import nl.knokko.gui.texture.GuiTexture;
 
 public abstract class GuiRenderer {
 
-	private List<RenderCommand> previousCommands, currentCommands;
+	private RenderCommandBuffer previousCommands, currentCommands;
+	
+	private HoverRegions trackedHoverRegions, currentHoverRegions;
 
 	private boolean renderAlways;
 
-	public GuiRenderer() {
-		previousCommands = new ArrayList<>(200);
-		currentCommands = new ArrayList<>(200);
+	public GuiRenderer() {}
+	
+	/**
+	 * Relative renderers pass their commands on to their parent, so only the renderers that actually record
+	 * commands will create their buffers.
+	 */
+	private RenderCommandBuffer getCurrentCommands() {
+		if (currentCommands == null) {
+			previousCommands = new RenderCommandBuffer(200);
+			currentCommands = new RenderCommandBuffer(200);
+		}
+		return currentCommands;
+	}
+
+	private HoverRegions getCurrentHoverRegions() {
+		if (currentHoverRegions == null) {
+			trackedHoverRegions = new HoverRegions(20);
+			currentHoverRegions = new HoverRegions(20);
+		}
+		return currentHoverRegions;
+	}
+	
+	/**
+	 * @return The hover regions that were registered during the last complete render pass. Relative
+	 * renderers will return the hover regions of their root renderer.
+	 */
+	public HoverRegions getHoverRegions() {
+		GuiRenderer root = getRoot();
+		root.getCurrentHoverRegions();
+		return root.trackedHoverRegions;
 	}
 
 	public void setRenderAlways(boolean renderAlways) {
@@ -45,11 +73,118 @@ public abstract class GuiRenderer {
 	}
 
 	public abstract GuiRenderer getArea(float minX, float minY, float maxX, float maxY);
+	
+	/**
+	 * @return The renderer this renderer passes its commands on to, or null if this renderer records its
+	 * commands itself
+	 */
+	GuiRenderer getParent() {
+		return null;
+	}
+	
+	/**
+	 * Converts an x-coordinate relative to this renderer to an x-coordinate relative to the parent renderer.
+	 */
+	float toParentX(float x) {
+		return x;
+	}
+	
+	/**
+	 * Converts a y-coordinate relative to this renderer to a y-coordinate relative to the parent renderer.
+	 */
+	float toParentY(float y) {
+		return y;
+	}
+	
+	/**
+	 * Renders the given component on this renderer, but reuses the commands stored in the given cache if that
+	 * cache is still valid and was recorded for the same area of the window. Otherwise, the component will be
+	 * rendered normally and the commands it produced will be stored in the cache.
+	 * @param cache The render cache of the component
+	 * @param component The component to render
+	 */
+	public void renderCached(RenderCache cache, GuiComponent component) {
+		GuiRenderer root = this;
+		float minX = 0;
+		float minY = 0;
+		float maxX = 1;
+		float maxY = 1;
+		GuiRenderer parent = root.getParent();
+		while (parent != null) {
+			minX = root.toParentX(minX);
+			minY = root.toParentY(minY);
+			maxX = root.toParentX(maxX);
+			maxY = root.toParentY(maxY);
+			root = parent;
+			parent = root.getParent();
+		}
+		
+		RenderCommandBuffer target = root.getCurrentCommands();
+		HoverRegions targetRegions = root.getCurrentHoverRegions();
+		if (cache.isValid(minX, minY, maxX, maxY)) {
+			target.addAll(cache.commands);
+			targetRegions.addAll(cache.hoverRegions);
+		} else {
+			int start = target.size();
+			int regionStart = targetRegions.size();
+			component.render(this);
+			cache.store(target, start, targetRegions, regionStart, minX, minY, maxX, maxY);
+		}
+	}
+	
+	/**
+	 * Registers the area of this renderer as hover region of the component with the given state. When hover
+	 * tracking is enabled on the window, the state will be invalidated when the mouse enters or leaves this
+	 * area. Components that look different when the mouse is over them should call this method in their
+	 * render method.
+	 * @param state The state of the component
+	 * @param tracksPosition True if the state should also be invalidated whenever the mouse moves within the
+	 * area, for components that depend on the exact mouse position
+	 */
+	public void trackHover(GuiComponentState state, boolean tracksPosition) {
+		GuiRenderer root = this;
+		float minX = 0;
+		float minY = 0;
+		float maxX = 1;
+		float maxY = 1;
+		GuiRenderer parent = root.getParent();
+		while (parent != null) {
+			minX = root.toParentX(minX);
+			minY = root.toParentY(minY);
+			maxX = root.toParentX(maxX);
+			maxY = root.toParentY(maxY);
+			root = parent;
+			parent = root.getParent();
+		}
+		root.getCurrentHoverRegions().add(state, tracksPosition, minX, minY, maxX, maxY);
+	}
+	
+	public void trackHover(GuiComponentState state) {
+		trackHover(state, false);
+	}
+	
+	private GuiRenderer getRoot() {
+		GuiRenderer root = this;
+		GuiRenderer parent = root.getParent();
+		while (parent != null) {
+			root = parent;
+			parent = root.getParent();
+		}
+		return root;
+	}
 
 	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
 		throw new UnsupportedOperationException("The GuiRenderer " + getClass() + " is not a parent renderer");
 	}
 
+	/**
+	 * Renders the texture as a mask with the given tint color. Renderers that don't override this method will
+	 * render the texture without tint.
+	 */
+	void renderTintedTextureNow(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+		renderTextureNow(texture, minX, minY, maxX, maxY);
+	}
+
 	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
 		throw new UnsupportedOperationException("The GuiRenderer " + getClass() + " is not a parent renderer");
 	}
@@ -58,37 +193,73 @@ public abstract class GuiRenderer {
 		throw new UnsupportedOperationException("The GuiRenderer " + getClass() + " is not a parent renderer");
 	}
 
+	/**
+	 * Renders the given texture. Nothing will be rendered if the texture is null, which can happen when the
+	 * texture of a component is still being created.
+	 */
 	public void renderTexture(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
-		currentCommands.add(new CommandTexture(texture, minX, minY, maxX, maxY));
+		if (texture != null)
+			getCurrentCommands().addTexture(texture, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Renders the given texture as a mask with the given tint: every pixel will get the tint color and the
+	 * alpha of the pixel will be multiplied by the alpha of the tint. This is meant for white mask textures,
+	 * like the character masks of the CharBuilder, so that the same texture can be used for every color.
+	 * @param texture The texture to render
+	 * @param tint The color to multiply the texture with
+	 */
+	public void renderTexture(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+		if (texture != null)
+			getCurrentCommands().addTintedTexture(texture, tint, minX, minY, maxX, maxY);
 	}
 
 	public void fill(GuiColor color, float minX, float minY, float maxX, float maxY) {
-		currentCommands.add(new CommandFill(color, minX, minY, maxX, maxY));
+		getCurrentCommands().addFill(color, minX, minY, maxX, maxY);
 	}
 
 	public void clear(GuiColor color) {
-		currentCommands.add(new CommandClear(color));
+		getCurrentCommands().addClear(color);
+	}
+
+	/**
+	 * Forgets the commands that were rendered last time, so that the next call to maybeRenderNow will render
+	 * all commands, even if they didn't change. This is needed when the previous result is lost.
+	 */
+	void forgetPreviousCommands() {
+		if (previousCommands != null) {
+			previousCommands.clear();
+		}
 	}
 
 	public void maybeRenderNow() {
-		if (!renderAlways) {
-			if (!previousCommands.equals(currentCommands)) {
-				renderNow(currentCommands);
-				previousCommands = currentCommands;
-				currentCommands = new ArrayList<>(currentCommands.size());
-			} else {
-				currentCommands.clear();
-			}
-		} else {
-			renderNow(currentCommands);
-			previousCommands = currentCommands;
-			currentCommands = new ArrayList<>(currentCommands.size());
+		getCurrentCommands();
+		if (renderAlways || !previousCommands.contentEquals(currentCommands)) {
+			renderChanges(previousCommands, currentCommands);
+			
+			// Swap the buffers so that the arrays of the previous frame can be reused
+			RenderCommandBuffer rendered = currentCommands;
+			currentCommands = previousCommands;
+			previousCommands = rendered;
 		}
+		currentCommands.clear();
+		
+		// The hover regions of this pass replace those of the previous pass
+		HoverRegions newRegions = getCurrentHoverRegions();
+		currentHoverRegions = trackedHoverRegions;
+		trackedHoverRegions = newRegions;
+		currentHoverRegions.clear();
 	}
 	
-	void renderNow(List<RenderCommand> renderCommands) {
-		for (RenderCommand command : renderCommands) {
-			command.execute(this);
-		}
+	/**
+	 * Renders the current commands. Renderers that can redraw only a part of their area can override this
+	 * method to compare the current commands with the previously rendered commands.
+	 */
+	void renderChanges(RenderCommandBuffer previousCommands, RenderCommandBuffer currentCommands) {
+		renderNow(currentCommands);
+	}
+	
+	void renderNow(RenderCommandBuffer renderCommands) {
+		renderCommands.execute(this);
 	}
 }
\ No newline at end of file
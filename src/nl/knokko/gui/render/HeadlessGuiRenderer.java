@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * A GuiRenderer that renders into a BufferedImage rather than onto a window. It doesn't need a display, so it
+ * can be used in headless mode. The coordinates are converted to pixels the same way as the AWTGuiRenderer
+ * does, so the image should look like the content of an AWT window of the same size.
+ */
+public class HeadlessGuiRenderer extends GuiRenderer {
+	
+	private BufferedImage image;
+	private Graphics2D g;
+	
+	private final TintCache tintCache = new TintCache();
+	
+	private int maxY;
+	private int deltaX;
+	private int deltaY;
+	
+	public HeadlessGuiRenderer(int width, int height) {
+		setSize(width, height);
+	}
+	
+	/**
+	 * Replaces the image of this renderer with a new empty image of the given size. Everything will be
+	 * rendered again during the next call to maybeRenderNow().
+	 * @param width The width of the new image in pixels
+	 * @param height The height of the new image in pixels
+	 */
+	public void setSize(int width, int height) {
+		if (g != null) {
+			g.dispose();
+		}
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		g = image.createGraphics();
+		maxY = height - 1;
+		deltaX = width - 1;
+		deltaY = height - 1;
+		forgetPreviousCommands();
+	}
+	
+	/**
+	 * @return The image this renderer renders into. The same image will be reused until setSize is called.
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	@Override
+	public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
+		return new RelativeGuiRenderer.Static(this, minX, minY, maxX, maxY);
+	}
+
+	@Override
+	void renderTextureNow(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		g.drawImage(texture.getImage(), Math.round(deltaX * minX), this.maxY - Math.round(deltaY * maxY), Math.round(deltaX * maxX), this.maxY - Math.round(deltaY * minY), texture.getMinX(), texture.getMinY(), texture.getMaxX(), texture.getMaxY(), null);
+	}
+
+	@Override
+	void renderTintedTextureNow(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+		BufferedImage tinted = tintCache.getTintedImage(texture, tint);
+		if (tinted != null)
+			g.drawImage(tinted, Math.round(deltaX * minX), this.maxY - Math.round(deltaY * maxY), Math.round(deltaX * maxX), this.maxY - Math.round(deltaY * minY), 0, 0, tinted.getWidth(), tinted.getHeight(), null);
+	}
+
+	@Override
+	void fillNow(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		g.setColor(new Color(color.getRedF(), color.getGreenF(), color.getBlueF(), color.getAlphaF()));
+		int minScreenX = (int) (deltaX * minX);
+		int minScreenY = this.maxY - (int) Math.ceil(deltaY * maxY);
+		g.fillRect(minScreenX, minScreenY, (int) Math.ceil(deltaX * maxX) - minScreenX + 1, (int) Math.ceil(deltaY * (1 - minY)) - minScreenY + 1);
+	}
+
+	@Override
+	void clearNow(GuiColor color) {
+		g.setColor(new Color(color.getRedF(), color.getGreenF(), color.getBlueF()));
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+	}
+}
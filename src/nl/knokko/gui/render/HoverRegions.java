@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.util.Arrays;
+
+import nl.knokko.gui.component.state.GuiComponentState;
+
+/**
+ * Stores the areas of the window that contain hover-sensitive components, together with the states of those
+ * components. Components register their area during rendering with GuiRenderer.trackHover. When hover
+ * tracking is enabled on the window, mouseMoved will be used to invalidate only the components the mouse
+ * entered or left (or moved over, for components that track the mouse position), rather than rendering the
+ * entire window again after every mouse movement.
+ */
+public final class HoverRegions {
+
+	private float[] coords;
+	private GuiComponentState[] states;
+	private boolean[] tracksPosition;
+
+	private int size;
+
+	HoverRegions(int capacity) {
+		coords = new float[4 * capacity];
+		states = new GuiComponentState[capacity];
+		tracksPosition = new boolean[capacity];
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > states.length) {
+			int newCapacity = Math.max(capacity, Math.max(16, 2 * states.length));
+			coords = Arrays.copyOf(coords, 4 * newCapacity);
+			states = Arrays.copyOf(states, newCapacity);
+			tracksPosition = Arrays.copyOf(tracksPosition, newCapacity);
+		}
+	}
+
+	void add(GuiComponentState state, boolean tracksPosition, float minX, float minY, float maxX, float maxY) {
+		ensureCapacity(size + 1);
+		int coordIndex = 4 * size;
+		coords[coordIndex] = minX;
+		coords[coordIndex + 1] = minY;
+		coords[coordIndex + 2] = maxX;
+		coords[coordIndex + 3] = maxY;
+		states[size] = state;
+		this.tracksPosition[size] = tracksPosition;
+		size++;
+	}
+
+	/**
+	 * Appends the regions in the range [start, end) of the source to this object.
+	 */
+	void addAll(HoverRegions source, int start, int end) {
+		int amount = end - start;
+		ensureCapacity(size + amount);
+		System.arraycopy(source.coords, 4 * start, coords, 4 * size, 4 * amount);
+		System.arraycopy(source.states, start, states, size, amount);
+		System.arraycopy(source.tracksPosition, start, tracksPosition, size, amount);
+		size += amount;
+	}
+
+	void addAll(HoverRegions source) {
+		addAll(source, 0, source.size);
+	}
+
+	void clear() {
+		Arrays.fill(states, 0, size, null);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private boolean contains(int index, float x, float y) {
+		int coordIndex = 4 * index;
+		return x >= coords[coordIndex] && x <= coords[coordIndex + 2]
+				&& y >= coords[coordIndex + 1] && y <= coords[coordIndex + 3];
+	}
+
+	/**
+	 * Invalidates the states of the components that the mouse entered or left by moving from (prevX, prevY)
+	 * to (x, y), and the states of the position-tracking components the mouse moved over. The coordinates
+	 * are NaN if the mouse is outside the window.
+	 * @return The number of states that were invalidated
+	 */
+	public int mouseMoved(float prevX, float prevY, float x, float y) {
+		int invalidated = 0;
+		for (int index = 0; index < size; index++) {
+			boolean wasInside = contains(index, prevX, prevY);
+			boolean isInside = contains(index, x, y);
+			if (wasInside != isInside || (tracksPosition[index] && isInside)) {
+				states[index].invalidate();
+				invalidated++;
+			}
+		}
+		return invalidated;
+	}
+}
@@ -52,6 +52,21 @@ public class RelativeGuiRenderer {
 		public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
 			return new Static(this, minX, minY, maxX, maxY);
 		}
+		
+		@Override
+		GuiRenderer getParent() {
+			return parent;
+		}
+		
+		@Override
+		float toParentX(float x) {
+			return minX + x * deltaX;
+		}
+		
+		@Override
+		float toParentY(float y) {
+			return minY + y * deltaY;
+		}
 
 		public void renderTexture(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
 			// Don't render stuff that is completely off the screen
@@ -59,6 +74,13 @@ public class RelativeGuiRenderer {
 				parent.renderTexture(texture, this.minX + minX * deltaX, this.minY + minY * deltaY, this.minX + maxX * deltaX, this.minY + maxY * deltaY);
 		}
 
+		@Override
+		public void renderTexture(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+			// Don't render stuff that is completely off the screen
+			if (minX <= 1 && minY <= 1 && maxX >= 0 && maxY >= 0)
+				parent.renderTexture(texture, tint, this.minX + minX * deltaX, this.minY + minY * deltaY, this.minX + maxX * deltaX, this.minY + maxY * deltaY);
+		}
+
 		public void fill(GuiColor color, float minX, float minY, float maxX, float maxY) {
 			// Don't render stuff that is completely off the screen
 			if (minX <= 1 && minY <= 1 && maxX >= 0 && maxY >= 0)
@@ -81,6 +103,21 @@ public class RelativeGuiRenderer {
 		public GuiRenderer getArea(float minX, float minY, float maxX, float maxY) {
 			return new Static(this, minX, minY, maxX, maxY);
 		}
+		
+		@Override
+		GuiRenderer getParent() {
+			return state.parent();
+		}
+		
+		@Override
+		float toParentX(float x) {
+			return state.minX() + state.deltaX() * x;
+		}
+		
+		@Override
+		float toParentY(float y) {
+			return state.minY() + state.deltaY() * y;
+		}
 
 		public void renderTexture(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
 			// Don't render stuff that is completely off the screen
@@ -88,6 +125,13 @@ public class RelativeGuiRenderer {
 				state.parent().renderTexture(texture, state.minX() + state.deltaX() * minX, state.minY() + state.deltaY() * minY, state.minX() + state.deltaX() * maxX, state.minY() + state.deltaY() * maxY);
 		}
 
+		@Override
+		public void renderTexture(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+			// Don't render stuff that is completely off the screen
+			if (minX <= 1 && minY <= 1 && maxX >= 0 && maxY >= 0)
+				state.parent().renderTexture(texture, tint, state.minX() + state.deltaX() * minX, state.minY() + state.deltaY() * minY, state.minX() + state.deltaX() * maxX, state.minY() + state.deltaY() * maxY);
+		}
+
 		public void fill(GuiColor color, float minX, float minY, float maxX, float maxY) {
 			// Don't render stuff that is completely off the screen
 			if (minX <= 1 && minY <= 1 && maxX >= 0 && maxY >= 0)
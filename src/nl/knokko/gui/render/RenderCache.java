@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+/**
+ * Stores the render commands a component produced the last time it was rendered with
+ * GuiRenderer.renderCached, so that they can be reused until the component is invalidated. The commands are
+ * stored in window coordinates, so the cache will also be ignored when the component is rendered at a
+ * different location. The hover regions that were registered while rendering the component are stored as
+ * well.
+ */
+public class RenderCache {
+	
+	RenderCommandBuffer commands;
+	HoverRegions hoverRegions;
+	
+	private boolean valid;
+	
+	private float minX;
+	private float minY;
+	private float maxX;
+	private float maxY;
+	
+	/**
+	 * Makes sure the next call to GuiRenderer.renderCached with this cache will render the component again.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+	
+	public boolean isValid() {
+		return valid;
+	}
+	
+	boolean isValid(float minX, float minY, float maxX, float maxY) {
+		return valid && this.minX == minX && this.minY == minY && this.maxX == maxX && this.maxY == maxY;
+	}
+	
+	void store(RenderCommandBuffer source, int start, HoverRegions sourceRegions, int regionStart, 
+			float minX, float minY, float maxX, float maxY) {
+		if (commands == null) {
+			commands = new RenderCommandBuffer(source.size() - start);
+			hoverRegions = new HoverRegions(sourceRegions.size() - regionStart);
+		} else {
+			commands.clear();
+			hoverRegions.clear();
+		}
+		commands.addAll(source, start, source.size());
+		hoverRegions.addAll(sourceRegions, regionStart, sourceRegions.size());
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		valid = true;
+	}
+}
@@ -1,6 +0,0 @@
-package nl.knokko.gui.render;
-
-interface RenderCommand {
-	
-	void execute(GuiRenderer guiRenderer);
-}
\ No newline at end of file
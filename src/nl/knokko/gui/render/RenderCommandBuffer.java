@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.util.Arrays;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * Stores render commands in reusable primitive arrays rather than as separate objects. Every command has an
+ * opcode, 4 coordinates, a handle (the texture or color it uses) and possibly a tint color. Once the arrays have grown large enough,
+ * recording commands into a buffer and clearing it again doesn't allocate anything.
+ */
+final class RenderCommandBuffer {
+
+	static final int TEXTURE = 0;
+	static final int FILL = 1;
+	static final int CLEAR = 2;
+	static final int TINTED_TEXTURE = 3;
+
+	private int[] opcodes;
+	private float[] coords;
+	private Object[] handles;
+	private GuiColor[] tints;
+
+	private int size;
+
+	RenderCommandBuffer(int capacity) {
+		opcodes = new int[capacity];
+		coords = new float[4 * capacity];
+		handles = new Object[capacity];
+		tints = new GuiColor[capacity];
+	}
+
+	private int next() {
+		if (size == opcodes.length) {
+			int newCapacity = Math.max(16, 2 * size);
+			opcodes = Arrays.copyOf(opcodes, newCapacity);
+			coords = Arrays.copyOf(coords, 4 * newCapacity);
+			handles = Arrays.copyOf(handles, newCapacity);
+			tints = Arrays.copyOf(tints, newCapacity);
+		}
+		return size++;
+	}
+
+	private void add(int opcode, Object handle, float minX, float minY, float maxX, float maxY) {
+		int index = next();
+		opcodes[index] = opcode;
+		handles[index] = handle;
+		tints[index] = null;
+		int coordIndex = 4 * index;
+		coords[coordIndex] = minX;
+		coords[coordIndex + 1] = minY;
+		coords[coordIndex + 2] = maxX;
+		coords[coordIndex + 3] = maxY;
+	}
+
+	void addTexture(GuiTexture texture, float minX, float minY, float maxX, float maxY) {
+		add(TEXTURE, texture, minX, minY, maxX, maxY);
+	}
+
+	void addTintedTexture(GuiTexture texture, GuiColor tint, float minX, float minY, float maxX, float maxY) {
+		add(TINTED_TEXTURE, texture, minX, minY, maxX, maxY);
+		tints[size - 1] = tint;
+	}
+
+	void addFill(GuiColor color, float minX, float minY, float maxX, float maxY) {
+		add(FILL, color, minX, minY, maxX, maxY);
+	}
+
+	void addClear(GuiColor color) {
+		add(CLEAR, color, 0, 0, 1, 1);
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity > opcodes.length) {
+			int newCapacity = Math.max(capacity, 2 * opcodes.length);
+			opcodes = Arrays.copyOf(opcodes, newCapacity);
+			coords = Arrays.copyOf(coords, 4 * newCapacity);
+			handles = Arrays.copyOf(handles, newCapacity);
+			tints = Arrays.copyOf(tints, newCapacity);
+		}
+	}
+	
+	/**
+	 * Appends the commands in the range [start, end) of the source buffer to this buffer.
+	 */
+	void addAll(RenderCommandBuffer source, int start, int end) {
+		int amount = end - start;
+		ensureCapacity(size + amount);
+		System.arraycopy(source.opcodes, start, opcodes, size, amount);
+		System.arraycopy(source.coords, 4 * start, coords, 4 * size, 4 * amount);
+		System.arraycopy(source.handles, start, handles, size, amount);
+		System.arraycopy(source.tints, start, tints, size, amount);
+		size += amount;
+	}
+	
+	void addAll(RenderCommandBuffer source) {
+		addAll(source, 0, source.size);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getOpcode(int index) {
+		return opcodes[index];
+	}
+
+	float getMinX(int index) {
+		return coords[4 * index];
+	}
+
+	float getMinY(int index) {
+		return coords[4 * index + 1];
+	}
+
+	float getMaxX(int index) {
+		return coords[4 * index + 2];
+	}
+
+	float getMaxY(int index) {
+		return coords[4 * index + 3];
+	}
+
+	Object getHandle(int index) {
+		return handles[index];
+	}
+	
+	GuiColor getTint(int index) {
+		return tints[index];
+	}
+
+	/**
+	 * Removes all commands from this buffer, but keeps the arrays so that they can be reused. The handles are
+	 * cleared as well, so that this buffer won't keep old textures alive.
+	 */
+	void clear() {
+		Arrays.fill(handles, 0, size, null);
+		Arrays.fill(tints, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Checks whether the command at the given index of this buffer is equal to the command at the given
+	 * index of the other buffer. Textures are compared by identity and colors are compared with equals, just
+	 * like the old command objects did.
+	 */
+	boolean equals(int index, RenderCommandBuffer other, int otherIndex) {
+		int opcode = opcodes[index];
+		if (opcode != other.opcodes[otherIndex]) {
+			return false;
+		}
+		Object handle = handles[index];
+		Object otherHandle = other.handles[otherIndex];
+		if (opcode == TEXTURE || opcode == TINTED_TEXTURE ? handle != otherHandle : !handle.equals(otherHandle)) {
+			return false;
+		}
+		if (opcode == TINTED_TEXTURE && !tints[index].equals(other.tints[otherIndex])) {
+			return false;
+		}
+		int coordIndex = 4 * index;
+		int otherCoordIndex = 4 * otherIndex;
+		return coords[coordIndex] == other.coords[otherCoordIndex]
+				&& coords[coordIndex + 1] == other.coords[otherCoordIndex + 1]
+				&& coords[coordIndex + 2] == other.coords[otherCoordIndex + 2]
+				&& coords[coordIndex + 3] == other.coords[otherCoordIndex + 3];
+	}
+
+	boolean contentEquals(RenderCommandBuffer other) {
+		if (size != other.size) {
+			return false;
+		}
+		for (int index = 0; index < size; index++) {
+			if (!equals(index, other, index)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void execute(GuiRenderer renderer) {
+		for (int index = 0; index < size; index++) {
+			execute(index, renderer);
+		}
+	}
+
+	void execute(int index, GuiRenderer renderer) {
+		int coordIndex = 4 * index;
+		switch (opcodes[index]) {
+		case TEXTURE:
+			renderer.renderTextureNow((GuiTexture) handles[index], coords[coordIndex], coords[coordIndex + 1],
+					coords[coordIndex + 2], coords[coordIndex + 3]);
+			break;
+		case FILL:
+			renderer.fillNow((GuiColor) handles[index], coords[coordIndex], coords[coordIndex + 1],
+					coords[coordIndex + 2], coords[coordIndex + 3]);
+			break;
+		case CLEAR:
+			renderer.clearNow((GuiColor) handles[index]);
+			break;
+		case TINTED_TEXTURE:
+			renderer.renderTintedTextureNow((GuiTexture) handles[index], tints[index], coords[coordIndex], 
+					coords[coordIndex + 1], coords[coordIndex + 2], coords[coordIndex + 3]);
+			break;
+		default:
+			throw new IllegalStateException("Unknown opcode: " + opcodes[index]);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.render;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nl.knokko.gui.color.GuiColor;
+import nl.knokko.gui.texture.GuiTexture;
+
+/**
+ * Caches tinted copies of (regions of) textures for the renderers that draw with java.awt.Graphics, since
+ * Graphics can't tint images while drawing them. Only the most recently used tinted images are kept.
+ */
+final class TintCache {
+	
+	private static final int MAX_ENTRIES = 2048;
+	
+	private final Map<Key,BufferedImage> images = new LinkedHashMap<Key,BufferedImage>(64, 0.75f, true) {
+
+		private static final long serialVersionUID = 6349276813604126925L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key,BufferedImage> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	
+	/**
+	 * The key that is used to look up tinted images, so that looking up an image that is already in the
+	 * cache doesn't need to allocate anything
+	 */
+	private final Key lookupKey = new Key();
+	
+	/**
+	 * Gets the tinted image of the region of the given texture, or creates it if it isn't in the cache.
+	 * @return The tinted image, or null if the region of the texture is empty
+	 */
+	BufferedImage getTintedImage(GuiTexture texture, GuiColor tint) {
+		int width = texture.getMaxX() - texture.getMinX();
+		int height = texture.getMaxY() - texture.getMinY();
+		if (width <= 0 || height <= 0) {
+			return null;
+		}
+		int argb = toARGB(tint);
+		lookupKey.setLookup(texture, argb);
+		BufferedImage image = images.get(lookupKey);
+		lookupKey.setLookup(null, 0);
+		if (image == null) {
+			Color color = new Color(argb, true);
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			g.drawImage(texture.getImage(), 0, 0, width, height, texture.getMinX(), texture.getMinY(), texture.getMaxX(), texture.getMaxY(), null);
+			g.setComposite(AlphaComposite.SrcIn);
+			g.setColor(color);
+			g.fillRect(0, 0, width, height);
+			g.dispose();
+			images.put(new Key(texture, argb), image);
+		}
+		return image;
+	}
+	
+	/**
+	 * Converts the color to ARGB the same way as the java.awt.Color constructor that takes floats
+	 */
+	private static int toARGB(GuiColor color) {
+		return (toByte(color.getAlphaF()) << 24) | (toByte(color.getRedF()) << 16) 
+				| (toByte(color.getGreenF()) << 8) | toByte(color.getBlueF());
+	}
+	
+	private static int toByte(float component) {
+		return (int) (component * 255 + 0.5f);
+	}
+	
+	/**
+	 * The key of a tinted image. The keys in the cache only hold a weak reference to the texture, so that the
+	 * cache doesn't keep the images of textures (like evicted character atlas pages) alive. Keys of collected
+	 * textures will never match again and will be evicted like any other old entry. The lookup key holds a
+	 * strong reference instead, which is cleared after every lookup.
+	 */
+	private static class Key {
+		
+		private final WeakReference<GuiTexture> texture;
+		private GuiTexture lookupTexture;
+		private int textureHash;
+		private int argb;
+		
+		private Key() {
+			this.texture = null;
+		}
+		
+		private Key(GuiTexture texture, int argb) {
+			this.texture = new WeakReference<GuiTexture>(texture);
+			this.textureHash = System.identityHashCode(texture);
+			this.argb = argb;
+		}
+		
+		private void setLookup(GuiTexture texture, int argb) {
+			this.lookupTexture = texture;
+			this.textureHash = System.identityHashCode(texture);
+			this.argb = argb;
+		}
+		
+		private GuiTexture getTexture() {
+			return texture != null ? texture.get() : lookupTexture;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if (other == this)
+				return true;
+			if (other instanceof Key) {
+				Key key = (Key) other;
+				GuiTexture ownTexture = getTexture();
+				return ownTexture != null && key.getTexture() == ownTexture && key.argb == argb;
+			}
+			return false;
+		}
+		
+		@Override
+		public int hashCode() {
+			return textureHash * 31 + argb;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.testing;
+
+import java.awt.event.KeyEvent;
+
+import nl.knokko.gui.keycode.AWTConverter;
+import nl.knokko.gui.keycode.KeyCode;
+import nl.knokko.gui.window.HeadlessGuiWindow;
+
+/**
+ * A GuiTestHelper that sends synthetic input events to a HeadlessGuiWindow instead of using a Robot, so tests
+ * can run on machines without a display.
+ */
+public class HeadlessTestHelper extends GuiTestHelper {
+	
+	private final HeadlessGuiWindow headlessWindow;
+
+	public HeadlessTestHelper(HeadlessGuiWindow window) {
+		super(window);
+		this.headlessWindow = window;
+	}
+
+	@Override
+	protected void moveMouseNow(int destX, int destY) {
+		headlessWindow.moveMouse((float) destX / window.getWidth(), 1f - (float) destY / window.getHeight());
+	}
+
+	@Override
+	protected void clickNow(int button) {
+		
+		// The buttons of GuiTestHelper start at 0, but the MouseCodes start at 1
+		headlessWindow.pressMouse(button + 1);
+		delay();
+		headlessWindow.releaseMouse(button + 1);
+	}
+
+	@Override
+	protected void typeNow(char character) {
+		
+		// A real keyboard would also generate key events for these characters
+		int awtKeyCode = KeyEvent.VK_UNDEFINED;
+		if (character == '\t') {
+			awtKeyCode = KeyEvent.VK_TAB;
+		} else if (character == '\n') {
+			awtKeyCode = KeyEvent.VK_ENTER;
+		}
+		pressKeys(awtKeyCode);
+		headlessWindow.type(character);
+		typeDelay();
+		releaseKeys(awtKeyCode);
+	}
+
+	@Override
+	protected void pressAndReleaseNow(int keycode) {
+		pressKeys(keycode);
+		typeDelay();
+		releaseKeys(keycode);
+	}
+	
+	private void pressKeys(int awtKeyCode) {
+		int[] codes = AWTConverter.getDirect(awtKeyCode);
+		if (codes != null && codes[0] != KeyCode.UNDEFINED) {
+			for (int code : codes) {
+				headlessWindow.pressKey(code);
+			}
+		}
+	}
+	
+	private void releaseKeys(int awtKeyCode) {
+		int[] codes = AWTConverter.getDirect(awtKeyCode);
+		if (codes != null && codes[0] != KeyCode.UNDEFINED) {
+			for (int code : codes) {
+				headlessWindow.releaseKey(code);
+			}
+		}
+	}
+}
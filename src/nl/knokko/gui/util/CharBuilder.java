@@ -26,69 +26,325 @@ package nl.knokko.gui.util;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
 import java.awt.font.LineMetrics;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import nl.knokko.gui.texture.GuiTexture;
 import nl.knokko.gui.texture.loader.GuiTextureLoader;
 
+/**
+ * Creates and caches the textures of single characters. Instead of creating a separate image for every
+ * character, the characters are drawn onto shared atlas pages and the textures are regions of those pages.
+ * 
+ * The memory of the cache is the memory of its atlas pages, so the byte budget is charged per page rather
+ * than per character. When the budget is exceeded, the least recently used pages are dropped together with
+ * all their characters. Characters that are too big for a page get a page of their own.
+ */
 public class CharBuilder {
 	
-	private final Map<Key,GuiTexture> charMap = new HashMap<Key,GuiTexture>();
+	/**
+	 * The width and height of the atlas pages, in pixels
+	 */
+	private static final int PAGE_SIZE = 512;
+	
+	/**
+	 * The number of empty pixels between 2 characters on the same page, to prevent them from bleeding into
+	 * each other when they are scaled
+	 */
+	private static final int PADDING = 1;
+	
+	/**
+	 * The default maximum number of bytes the atlas pages can use: 16 MiB
+	 */
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+	
+	private final Map<Key,Entry> charMap = new HashMap<Key,Entry>(256);
+	
+	/**
+	 * All atlas pages, from least recently used to most recently used
+	 */
+	private final Set<AtlasPage> pages = new LinkedHashSet<AtlasPage>();
+	
+	/**
+	 * The page that new characters will be drawn on, or null if a new page should be created
+	 */
+	private AtlasPage currentPage;
+	
+	/**
+	 * The page that was used most recently, so it doesn't need to be moved to the end of pages again
+	 */
+	private AtlasPage lastUsedPage;
 	
 	private final GuiTextureLoader textureLoader;
 	
-	public CharBuilder(GuiTextureLoader textureLoader) {
+	private long maxBytes;
+	private long bytes;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	public CharBuilder(GuiTextureLoader textureLoader, long maxBytes) {
 		this.textureLoader = textureLoader;
+		this.maxBytes = maxBytes;
+	}
+	
+	public CharBuilder(GuiTextureLoader textureLoader) {
+		this(textureLoader, DEFAULT_MAX_BYTES);
 	}
 	
+	/**
+	 * Gets the texture of the given character in the given color. Every color needs its own texture, so
+	 * components that use multiple colors should prefer the mask texture of getTexture(char, Font) and
+	 * render it with a tint.
+	 */
 	public GuiTexture getTexture(char character, Color color, Font font) {
 		Key key = new Key(character, color, font);
-		GuiTexture texture = charMap.get(key);
-		if (texture == null) {
-			ImageResult result = createTexture(character, color, font);
-			texture = textureLoader.loadTexture(result.image, 0, 0, result.maxX, result.maxY);
-			charMap.put(key, texture);
+		Entry entry = charMap.get(key);
+		if (entry == null) {
+			misses++;
+			entry = createEntry(key);
+			charMap.put(key, entry);
+			evict();
+		} else {
+			hits++;
+			if (entry.page != null)
+				use(entry.page);
 		}
-		return texture;
+		return entry.texture;
 	}
 	
-	private ImageResult createTexture(char character, Color color, Font font) {
-		BufferedImage image = new BufferedImage(font.getSize(), font.getSize() * 5 / 4, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g = image.createGraphics();
-		g.setFont(font);
-		Rectangle2D bounds = font.getStringBounds(new char[] {character}, 0, 1, g.getFontRenderContext());
-		LineMetrics lm = font.getLineMetrics(new char[] {character}, 0, 1, g.getFontRenderContext());
+	/**
+	 * Gets the mask texture of the given character: the character is white and the rest is transparent.
+	 * The mask should be rendered with GuiRenderer.renderTexture(texture, tint, ...) to give it a color, so
+	 * that the same texture can be used for all colors.
+	 */
+	public GuiTexture getTexture(char character, Font font) {
+		return getTexture(character, Color.WHITE, font);
+	}
+	
+	/**
+	 * The character textures are regions of atlas pages with an exclusive maxX and maxY, so getWidth() of
+	 * those textures is 1 pixel too large. Code that lays out character textures should use this method.
+	 * @return The width of the given character texture, in pixels
+	 */
+	public static int getCharWidth(GuiTexture texture) {
+		return texture.getMaxX() - texture.getMinX();
+	}
+	
+	/**
+	 * The character textures are regions of atlas pages with an exclusive maxX and maxY, so getHeight() of
+	 * those textures is 1 pixel too large. Code that lays out character textures should use this method.
+	 * @return The height of the given character texture, in pixels
+	 */
+	public static int getCharHeight(GuiTexture texture) {
+		return texture.getMaxY() - texture.getMinY();
+	}
+	
+	/**
+	 * Marks the given page as the most recently used page.
+	 */
+	private void use(AtlasPage page) {
+		if (page != lastUsedPage) {
+			pages.remove(page);
+			pages.add(page);
+			lastUsedPage = page;
+		}
+	}
+	
+	/**
+	 * Drops the least recently used pages until the pages use at most maxBytes bytes. The most recently used
+	 * page will never be dropped, because the last requested character is on it. Components that still
+	 * have the texture of an evicted character can continue to use it, but that will keep the image of its
+	 * page in memory.
+	 */
+	private void evict() {
+		Iterator<AtlasPage> iterator = pages.iterator();
+		while (bytes > maxBytes && pages.size() > 1) {
+			AtlasPage page = iterator.next();
+			iterator.remove();
+			bytes -= page.bytes;
+			for (Key key : page.keys)
+				charMap.remove(key);
+			evictions += page.keys.size();
+			if (page == currentPage)
+				currentPage = null;
+		}
+	}
+	
+	/**
+	 * Changes the maximum number of bytes the atlas pages can use. If the pages currently use more, the
+	 * least recently used pages will be dropped immediately.
+	 * @param maxBytes The new maximum number of bytes
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+	
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	/**
+	 * @return The number of bytes used by the images of the atlas pages
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * @return The number of times a requested character was already in the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return The number of times a requested character had to be drawn because it wasn't in the cache
+	 */
+	public long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return The number of characters that have been removed from the cache to stay within the budget
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * @return The number of characters that are currently in the cache
+	 */
+	public int getCharacterCount() {
+		return charMap.size();
+	}
+	
+	/**
+	 * @return The number of atlas pages that are currently in use
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+	
+	private Entry createEntry(Key key) {
+		char[] chars = {key.character};
+		FontRenderContext frc = FontCache.RENDER_CONTEXT;
+		Rectangle2D bounds = key.font.getStringBounds(chars, 0, 1, frc);
+		LineMetrics lm = key.font.getLineMetrics(chars, 0, 1, frc);
+		int width = (int) Math.ceil(bounds.getWidth());
 		int height = (int) Math.ceil(lm.getAscent() + lm.getDescent());
-		if (bounds.getWidth() > image.getWidth() || height > image.getHeight()) {
-			g.dispose();
-			if (bounds.getWidth() == 0 || height == 0)
-				return new ImageResult(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB), 0, 0);
-			image = new BufferedImage((int) Math.ceil(bounds.getWidth()), height, BufferedImage.TYPE_INT_ARGB);
-			g = image.createGraphics();
-			g.setFont(font);
+		if (width == 0 || height == 0)
+			return new Entry(textureLoader.loadTexture(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB), 0, 0, 0, 0), null);
+		
+		AtlasPage page;
+		
+		// Characters that don't fit on a page get a page of their own
+		if (width + PADDING > PAGE_SIZE || height + PADDING > PAGE_SIZE) {
+			page = new AtlasPage(width, height);
+			page.allocate(width, height);
+		} else {
+			if (currentPage == null || !currentPage.allocate(width, height)) {
+				currentPage = new AtlasPage(PAGE_SIZE, PAGE_SIZE);
+				currentPage.allocate(width, height);
+			}
+			page = currentPage;
+		}
+		if (page.keys.isEmpty())
+			bytes += page.bytes;
+		page.keys.add(key);
+		use(page);
+		drawCharacter(page.image, key.character, new Color(key.rgba, true), key.font, lm.getAscent(), page.lastX, page.lastY, width, height);
+		GuiTexture texture = textureLoader.loadTexture(page.image, page.lastX, page.lastY, page.lastX + width, page.lastY + height);
+		return new Entry(texture, page);
+	}
+	
+	private static class Entry {
+		
+		private final GuiTexture texture;
+		
+		/**
+		 * The atlas page of the character, or null if the character is empty
+		 */
+		private final AtlasPage page;
+		
+		private Entry(GuiTexture texture, AtlasPage page) {
+			this.texture = texture;
+			this.page = page;
 		}
+	}
+	
+	private static void drawCharacter(BufferedImage image, char character, Color color, Font font, 
+			float ascent, int x, int y, int width, int height) {
+		Graphics2D g = image.createGraphics();
+		
+		// Parts of the character outside its bounds would have been cut off in a separate image as well
+		g.setClip(x, y, width, height);
+		g.setFont(font);
 		g.setColor(color);
-		g.drawString(Character.toString(character), 0, lm.getAscent());
+		g.drawString(Character.toString(character), x, y + ascent);
 		g.dispose();
-		return new ImageResult(image, (int) Math.ceil(bounds.getWidth()), height);
 	}
 	
-	private static class ImageResult {
+	/**
+	 * An atlas page that is filled row by row. The characters are placed next to each other in the current
+	 * row until the row is full. The height of a row is the height of its highest character.
+	 */
+	private static class AtlasPage {
 		
-		private ImageResult(BufferedImage image, int maxX, int maxY) {
-			this.image = image;
-			this.maxX = maxX;
-			this.maxY = maxY;
-		}
+		private final BufferedImage image;
+		private final long bytes;
+		
+		/**
+		 * The keys of the characters on this page
+		 */
+		private final List<Key> keys = new ArrayList<Key>();
+		
+		private int rowX;
+		private int rowY;
+		private int rowHeight;
+		
+		/**
+		 * The location of the last allocated region
+		 */
+		private int lastX;
+		private int lastY;
 		
-		private BufferedImage image;
+		private AtlasPage(int width, int height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			bytes = 4L * width * height;
+		}
 		
-		private int maxX;
-		private int maxY;
+		/**
+		 * Tries to reserve a region of the given size on this page. If it succeeds, the location of the region
+		 * will be stored in lastX and lastY.
+		 * @return true if the region was reserved, false if this page is too full
+		 */
+		private boolean allocate(int width, int height) {
+			if (rowX + width > image.getWidth()) {
+				rowX = 0;
+				rowY += rowHeight + PADDING;
+				rowHeight = 0;
+			}
+			if (rowY + height > image.getHeight()) {
+				return false;
+			}
+			lastX = rowX;
+			lastY = rowY;
+			rowX += width + PADDING;
+			rowHeight = Math.max(rowHeight, height);
+			return true;
+		}
 	}
 	
 	private static class Key implements Comparable<Key> {
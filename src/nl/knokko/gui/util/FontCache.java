@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.util;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the fonts and text measurements that are needed to lay out text. All measurements use the same
+ * FontRenderContext, which is the context of the Graphics2D of a BufferedImage (no transform, no
+ * anti-aliasing and no fractional metrics), so measuring text doesn't require creating a graphics context.
+ *
+ * The methods of this class can be called from any thread, because TextBuilder can be used by the worker
+ * threads of TextTextureCache.
+ */
+public final class FontCache {
+
+	/**
+	 * The FontRenderContext that should be used to measure text that will be drawn on a BufferedImage
+	 */
+	public static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, false, false);
+
+	/**
+	 * The maximum number of strings whose measurements will be remembered
+	 */
+	private static final int MAX_STRINGS = 1024;
+
+	private static final Map<SizeKey,Font> SIZED_FONTS = new ConcurrentHashMap<SizeKey,Font>();
+
+	private static final Map<TextKey,Rectangle2D> STRING_BOUNDS = new LruMap<Rectangle2D>();
+	private static final Map<TextKey,LineMetrics> LINE_METRICS = new LruMap<LineMetrics>();
+
+	private FontCache() {}
+
+	/**
+	 * Gets the font with the same font name and style as the given font, but with the given size. This is the
+	 * same as new Font(font.getFontName(), font.getStyle(), size), but the result is reused.
+	 */
+	public static Font getSizedFont(Font font, int size) {
+		SizeKey key = new SizeKey(font, size);
+		Font sized = SIZED_FONTS.get(key);
+		if (sized == null) {
+			sized = new Font(font.getFontName(), font.getStyle(), size);
+			SIZED_FONTS.put(key, sized);
+		}
+		return sized;
+	}
+
+	/**
+	 * Gets the bounds of the given text in the given font. The result is shared, so it must not be modified.
+	 */
+	public static Rectangle2D getStringBounds(Font font, String text) {
+		TextKey key = new TextKey(font, text);
+		Rectangle2D bounds;
+		synchronized (STRING_BOUNDS) {
+			bounds = STRING_BOUNDS.get(key);
+		}
+		if (bounds == null) {
+			bounds = font.getStringBounds(text, RENDER_CONTEXT);
+			synchronized (STRING_BOUNDS) {
+				STRING_BOUNDS.put(key, bounds);
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * @return The advance of the given text in the given font, in pixels of the font
+	 */
+	public static double getAdvance(Font font, String text) {
+		return getStringBounds(font, text).getWidth();
+	}
+
+	public static LineMetrics getLineMetrics(Font font, String text) {
+		TextKey key = new TextKey(font, text);
+		LineMetrics metrics;
+		synchronized (LINE_METRICS) {
+			metrics = LINE_METRICS.get(key);
+		}
+		if (metrics == null) {
+			metrics = font.getLineMetrics(text, RENDER_CONTEXT);
+			synchronized (LINE_METRICS) {
+				LINE_METRICS.put(key, metrics);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Forgets all cached fonts and measurements.
+	 */
+	public static void clear() {
+		SIZED_FONTS.clear();
+		synchronized (STRING_BOUNDS) {
+			STRING_BOUNDS.clear();
+		}
+		synchronized (LINE_METRICS) {
+			LINE_METRICS.clear();
+		}
+	}
+
+	private static class LruMap<V> extends LinkedHashMap<TextKey,V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private LruMap() {
+			super(256, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<TextKey,V> eldest) {
+			return size() > MAX_STRINGS;
+		}
+	}
+
+	private static class SizeKey {
+
+		private final Font font;
+		private final int size;
+
+		private SizeKey(Font font, int size) {
+			this.font = font;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof SizeKey) {
+				SizeKey key = (SizeKey) other;
+				return key.size == size && key.font.equals(font);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * font.hashCode() + size;
+		}
+	}
+
+	private static class TextKey {
+
+		private final Font font;
+		private final String text;
+
+		private TextKey(Font font, String text) {
+			this.font = font;
+			this.text = text;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof TextKey) {
+				TextKey key = (TextKey) other;
+				return key.text.equals(text) && key.font.equals(font);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * font.hashCode() + text.hashCode();
+		}
+	}
+}
@@ -0,0 +1,553 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.util;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Breaks the text of a TextBuffer into lines that fit within a maximum width. The text is divided into
+ * paragraphs (separated by newline characters), and every paragraph is broken into one or more lines.
+ * Lines are broken after the last space that fits, or in the middle of a word if a single word doesn't
+ * fit on a line.
+ *
+ * The layout listens to the changes of the buffer and only lays out the paragraphs that changed. The
+ * advance of every character is measured only once, so laying out a paragraph takes time proportional to
+ * its length.
+ *
+ * The paragraphs are stored in a balanced tree (a treap ordered by paragraph index) in which every node
+ * knows the total number of characters and lines in its subtree. Paragraph starts and first lines are
+ * derived from those totals rather than stored, so a change only needs to update the nodes above the
+ * changed paragraphs. Thus an edit takes logarithmic time in the number of paragraphs, plus the time to
+ * lay out the changed paragraphs.
+ */
+public class LineLayout implements TextBuffer.Listener {
+
+	private static final int[] SINGLE_LINE = {0};
+
+	private final TextBuffer buffer;
+	private final Font font;
+	private final FontRenderContext frc;
+
+	private float maxWidth;
+
+	/**
+	 * The advances of the characters below 256, or NaN if the advance hasn't been measured yet
+	 */
+	private final float[] asciiAdvances;
+	private final Map<Character,Float> otherAdvances;
+
+	/**
+	 * The root of the tree of paragraphs
+	 */
+	private Paragraph root;
+
+	/**
+	 * The paragraphs that need to be laid out again. Paragraphs that were removed from the tree before they
+	 * were laid out are skipped.
+	 */
+	private final List<Paragraph> dirtyParagraphs;
+
+	private final Random random;
+
+	/**
+	 * The results of the last call to one of the find methods: the index, start offset and first line of
+	 * the paragraph that was found
+	 */
+	private int foundIndex;
+	private int foundStart;
+	private int foundFirstLine;
+
+	/**
+	 * @param buffer The buffer that contains the text. The layout will register itself as listener.
+	 * @param font The font the text will be drawn with
+	 * @param maxWidth The maximum width of a line, in pixels of the font
+	 */
+	public LineLayout(TextBuffer buffer, Font font, float maxWidth) {
+		this.buffer = buffer;
+		this.font = font;
+		this.frc = FontCache.RENDER_CONTEXT;
+		this.maxWidth = maxWidth;
+		this.asciiAdvances = new float[256];
+		Arrays.fill(asciiAdvances, Float.NaN);
+		this.otherAdvances = new HashMap<Character,Float>();
+		this.dirtyParagraphs = new ArrayList<Paragraph>();
+		this.random = new Random(0);
+		List<Paragraph> paragraphs = split(0, buffer.length());
+		root = build(paragraphs);
+		dirtyParagraphs.addAll(paragraphs);
+		buffer.addListener(this);
+	}
+
+	public Font getFont() {
+		return font;
+	}
+
+	public float getMaxWidth() {
+		return maxWidth;
+	}
+
+	/**
+	 * Changes the maximum width of the lines. All paragraphs will be laid out again.
+	 */
+	public void setMaxWidth(float newMaxWidth) {
+		if (newMaxWidth != maxWidth) {
+			maxWidth = newMaxWidth;
+			dirtyParagraphs.clear();
+			markDirty(root);
+		}
+	}
+
+	private void markDirty(Paragraph paragraph) {
+		if (paragraph != null) {
+			markDirty(paragraph.left);
+			paragraph.dirty = true;
+			dirtyParagraphs.add(paragraph);
+			markDirty(paragraph.right);
+		}
+	}
+
+	/**
+	 * Stops listening to the buffer. This layout should not be used anymore after calling this method.
+	 */
+	public void dispose() {
+		buffer.removeListener(this);
+	}
+
+	/**
+	 * @return The advance of the given character, in pixels of the font
+	 */
+	public float getAdvance(char character) {
+		if (character < asciiAdvances.length) {
+			float advance = asciiAdvances[character];
+			if (advance != advance) {
+				advance = measure(character);
+				asciiAdvances[character] = advance;
+			}
+			return advance;
+		}
+		Float advance = otherAdvances.get(character);
+		if (advance == null) {
+			advance = measure(character);
+			otherAdvances.put(character, advance);
+		}
+		return advance;
+	}
+
+	private float measure(char character) {
+		return (float) font.getStringBounds(new char[] {character}, 0, 1, frc).getWidth();
+	}
+
+	/**
+	 * Splits the range [start, end) of the buffer into paragraphs. The range must start at the start of a
+	 * paragraph and end at the end of a paragraph.
+	 */
+	private List<Paragraph> split(int start, int end) {
+		List<Paragraph> result = new ArrayList<Paragraph>();
+		int paragraphStart = start;
+		for (int index = start; index < end; index++) {
+			if (buffer.charAt(index) == '\n') {
+				result.add(new Paragraph(index - paragraphStart));
+				paragraphStart = index + 1;
+			}
+		}
+		result.add(new Paragraph(end - paragraphStart));
+		return result;
+	}
+
+	@Override
+	public void textChanged(TextBuffer changedBuffer, int start, int removedLength, int insertedLength) {
+		find(start);
+		int firstIndex = foundIndex;
+		int firstStart = foundStart;
+		Paragraph last = find(start + removedLength);
+		int lastIndex = foundIndex;
+		int lastEnd = foundStart + last.length + insertedLength - removedLength;
+
+		// Only the paragraphs that overlap the changed range need to be split and laid out again
+		Paragraph after = splitTree(root, lastIndex + 1);
+		Paragraph before = splitLeft;
+		Paragraph replaced = splitTree(before, firstIndex);
+		before = splitLeft;
+		markRemoved(replaced);
+
+		List<Paragraph> newParagraphs = split(firstStart, lastEnd);
+		dirtyParagraphs.addAll(newParagraphs);
+		root = merge(merge(before, build(newParagraphs)), after);
+		root.parent = null;
+	}
+
+	private void markRemoved(Paragraph paragraph) {
+		if (paragraph != null) {
+			paragraph.removed = true;
+			markRemoved(paragraph.left);
+			markRemoved(paragraph.right);
+		}
+	}
+
+	/**
+	 * Lays out all paragraphs that changed since the last layout. This is called automatically by the methods
+	 * that need the layout.
+	 */
+	public void layout() {
+		if (!dirtyParagraphs.isEmpty()) {
+			for (Paragraph paragraph : dirtyParagraphs) {
+				if (paragraph.dirty && !paragraph.removed) {
+					int oldLineCount = paragraph.lineCount;
+					paragraph.layout(getStart(paragraph));
+					if (paragraph.lineCount != oldLineCount) {
+						for (Paragraph node = paragraph; node != null; node = node.parent)
+							node.update();
+					}
+				}
+			}
+			dirtyParagraphs.clear();
+		}
+	}
+
+	public int getLineCount() {
+		layout();
+		return root.totalLines;
+	}
+
+	public int getParagraphCount() {
+		return root.size;
+	}
+
+	/**
+	 * @return The index of the paragraph that contains the given line
+	 */
+	public int getParagraphOfLine(int line) {
+		layout();
+		findLine(line);
+		return foundIndex;
+	}
+
+	/**
+	 * @return true if the given line is the first line of its paragraph
+	 */
+	public boolean isParagraphStart(int line) {
+		layout();
+		findLine(line);
+		return foundFirstLine == line;
+	}
+
+	/**
+	 * @return The offset in the buffer of the first character of the given line
+	 */
+	public int getLineStart(int line) {
+		layout();
+		Paragraph paragraph = findLine(line);
+		return foundStart + paragraph.lineStarts[line - foundFirstLine];
+	}
+
+	/**
+	 * @return The offset in the buffer after the last character of the given line. The newline character at
+	 * the end of a paragraph is not part of the line.
+	 */
+	public int getLineEnd(int line) {
+		layout();
+		Paragraph paragraph = findLine(line);
+		int lineInParagraph = line - foundFirstLine;
+		if (lineInParagraph + 1 < paragraph.lineCount)
+			return foundStart + paragraph.lineStarts[lineInParagraph + 1];
+		return foundStart + paragraph.length;
+	}
+
+	public String getLine(int line) {
+		return buffer.substring(getLineStart(line), getLineEnd(line));
+	}
+
+	/**
+	 * @return The index of the line that contains the given offset of the buffer
+	 */
+	public int getLineOfOffset(int offset) {
+		layout();
+		Paragraph paragraph = find(offset);
+		int relativeOffset = offset - foundStart;
+		int lineInParagraph = Arrays.binarySearch(paragraph.lineStarts, 0, paragraph.lineCount, relativeOffset);
+		if (lineInParagraph < 0)
+			lineInParagraph = -lineInParagraph - 2;
+		return foundFirstLine + lineInParagraph;
+	}
+
+	/**
+	 * @return The width of the characters between the start of the line of the given offset and the offset,
+	 * in pixels of the font
+	 */
+	public float getX(int offset) {
+		int lineStart = getLineStart(getLineOfOffset(offset));
+		float x = 0;
+		for (int index = lineStart; index < offset; index++)
+			x += getAdvance(buffer.charAt(index));
+		return x;
+	}
+
+	/**
+	 * Finds the paragraph that contains the given offset of the buffer. The newline character at the end of
+	 * a paragraph belongs to that paragraph. The index, start and first line of the paragraph will be stored
+	 * in foundIndex, foundStart and foundFirstLine.
+	 */
+	private Paragraph find(int offset) {
+		Paragraph node = root;
+		int index = 0;
+		int start = 0;
+		int line = 0;
+		while (true) {
+			Paragraph left = node.left;
+			int leftLength = totalLength(left);
+			if (offset < leftLength) {
+				node = left;
+				continue;
+			}
+			index += size(left);
+			start += leftLength;
+			line += totalLines(left);
+			offset -= leftLength;
+			if (offset <= node.length || node.right == null)
+				break;
+			index++;
+			start += node.length + 1;
+			line += node.lineCount;
+			offset -= node.length + 1;
+			node = node.right;
+		}
+		foundIndex = index;
+		foundStart = start;
+		foundFirstLine = line;
+		return node;
+	}
+
+	/**
+	 * Finds the paragraph that contains the given line, and stores its index, start and first line in
+	 * foundIndex, foundStart and foundFirstLine. The layout must be up-to-date.
+	 */
+	private Paragraph findLine(int line) {
+		Paragraph node = root;
+		int index = 0;
+		int start = 0;
+		int firstLine = 0;
+		while (true) {
+			Paragraph left = node.left;
+			int leftLines = totalLines(left);
+			if (line < leftLines) {
+				node = left;
+				continue;
+			}
+			index += size(left);
+			start += totalLength(left);
+			firstLine += leftLines;
+			line -= leftLines;
+			if (line < node.lineCount || node.right == null)
+				break;
+			index++;
+			start += node.length + 1;
+			firstLine += node.lineCount;
+			line -= node.lineCount;
+			node = node.right;
+		}
+		foundIndex = index;
+		foundStart = start;
+		foundFirstLine = firstLine;
+		return node;
+	}
+
+	/**
+	 * @return The offset of the first character of the given paragraph in the buffer
+	 */
+	private int getStart(Paragraph paragraph) {
+		int start = totalLength(paragraph.left);
+		for (Paragraph node = paragraph; node.parent != null; node = node.parent) {
+			Paragraph parent = node.parent;
+			if (parent.right == node)
+				start += totalLength(parent.left) + parent.length + 1;
+		}
+		return start;
+	}
+
+	private static int size(Paragraph paragraph) {
+		return paragraph == null ? 0 : paragraph.size;
+	}
+
+	private static int totalLength(Paragraph paragraph) {
+		return paragraph == null ? 0 : paragraph.totalLength;
+	}
+
+	private static int totalLines(Paragraph paragraph) {
+		return paragraph == null ? 0 : paragraph.totalLines;
+	}
+
+	/**
+	 * Builds a tree that contains the given paragraphs in the same order.
+	 */
+	private Paragraph build(List<Paragraph> paragraphs) {
+		Paragraph result = null;
+		for (Paragraph paragraph : paragraphs) {
+			paragraph.priority = random.nextInt();
+			paragraph.update();
+			result = merge(result, paragraph);
+		}
+		return result;
+	}
+
+	/**
+	 * Merges 2 trees. All paragraphs of the first tree will come before the paragraphs of the second tree.
+	 * @return The root of the merged tree
+	 */
+	private static Paragraph merge(Paragraph first, Paragraph second) {
+		if (first == null)
+			return second;
+		if (second == null)
+			return first;
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			first.update();
+			return first;
+		} else {
+			second.left = merge(first, second.left);
+			second.update();
+			return second;
+		}
+	}
+
+	/**
+	 * The root of the first tree of the last call to splitTree
+	 */
+	private Paragraph splitLeft;
+
+	/**
+	 * Splits the given tree into a tree with the first count paragraphs, which will be stored in splitLeft,
+	 * and a tree with the other paragraphs, which will be returned.
+	 */
+	private Paragraph splitTree(Paragraph node, int count) {
+		if (node == null) {
+			splitLeft = null;
+			return null;
+		}
+		Paragraph result;
+		int leftSize = size(node.left);
+		if (count <= leftSize) {
+			node.left = splitTree(node.left, count);
+			result = node;
+		} else {
+			Paragraph right = splitTree(node.right, count - leftSize - 1);
+			node.right = splitLeft;
+			splitLeft = node;
+			result = right;
+		}
+		node.update();
+		node.parent = null;
+		if (result != null)
+			result.parent = null;
+		if (splitLeft != null)
+			splitLeft.parent = null;
+		return result;
+	}
+
+	private class Paragraph {
+
+		private final int length;
+
+		/**
+		 * The offsets of the starts of the lines, relative to the start of this paragraph
+		 */
+		private int[] lineStarts;
+		private int lineCount;
+
+		private boolean dirty;
+
+		/**
+		 * True if this paragraph has been replaced by new paragraphs
+		 */
+		private boolean removed;
+
+		private Paragraph left;
+		private Paragraph right;
+		private Paragraph parent;
+		private int priority;
+
+		/**
+		 * The number of paragraphs, the number of characters (including the newline after every paragraph)
+		 * and the number of lines in the subtree of this paragraph
+		 */
+		private int size;
+		private int totalLength;
+		private int totalLines;
+
+		private Paragraph(int length) {
+			this.length = length;
+			this.lineStarts = SINGLE_LINE;
+			this.dirty = true;
+		}
+
+		/**
+		 * Computes the totals of the subtree of this paragraph again, from the totals of its children
+		 */
+		private void update() {
+			size = 1 + size(left) + size(right);
+			totalLength = length + 1 + totalLength(left) + totalLength(right);
+			totalLines = lineCount + totalLines(left) + totalLines(right);
+			if (left != null)
+				left.parent = this;
+			if (right != null)
+				right.parent = this;
+		}
+
+		private void layout(int start) {
+			int[] starts = SINGLE_LINE;
+			int count = 1;
+			int lineStart = 0;
+			int lastSpace = -1;
+			float width = 0;
+			for (int index = 0; index < length; index++) {
+				char character = buffer.charAt(start + index);
+				float advance = getAdvance(character);
+				if (width + advance > maxWidth && index > lineStart) {
+
+					// Don't break words if possible, that's ugly
+					int breakIndex = lastSpace >= lineStart ? lastSpace + 1 : index;
+					if (count == starts.length)
+						starts = Arrays.copyOf(starts, 2 * count);
+					starts[count++] = breakIndex;
+					lineStart = breakIndex;
+					width = 0;
+					for (int lineIndex = lineStart; lineIndex < index; lineIndex++)
+						width += getAdvance(buffer.charAt(start + lineIndex));
+				}
+				if (character == ' ')
+					lastSpace = index;
+				width += advance;
+			}
+			lineStarts = starts;
+			lineCount = count;
+			dirty = false;
+		}
+	}
+}
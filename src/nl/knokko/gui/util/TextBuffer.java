@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mutable text that is stored in a gap buffer: an array with an unused gap at the position of the last
+ * edit. Inserting or deleting characters near the previous edit only needs to move the gap a little, so
+ * the cost of an edit is proportional to the size of the edit rather than the length of the text.
+ *
+ * The buffer also keeps track of a cursor and a selection. The cursor is the position where typed
+ * characters will be inserted, and the selection is the range between the selection anchor and the
+ * cursor. Listeners will be notified about every change of the text, with the range that changed, so
+ * that they only need to update the part of their layout that changed.
+ */
+public class TextBuffer implements CharSequence {
+
+	private static final int MIN_GAP = 16;
+
+	private char[] buffer;
+	private int gapStart;
+	private int gapEnd;
+
+	private int cursor;
+
+	/**
+	 * The other end of the selection, or -1 if nothing is selected
+	 */
+	private int anchor;
+
+	/**
+	 * The result of the last call to toString(), or null if the text changed since then
+	 */
+	private String cachedString;
+
+	private final List<Listener> listeners;
+
+	public TextBuffer(CharSequence initialText) {
+		int length = initialText.length();
+		buffer = new char[length + MIN_GAP];
+		for (int index = 0; index < length; index++)
+			buffer[index] = initialText.charAt(index);
+		gapStart = length;
+		gapEnd = buffer.length;
+		cursor = length;
+		anchor = -1;
+		listeners = new ArrayList<Listener>(1);
+	}
+
+	public TextBuffer() {
+		this("");
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public int length() {
+		return buffer.length - (gapEnd - gapStart);
+	}
+
+	public boolean isEmpty() {
+		return length() == 0;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length())
+			throw new IndexOutOfBoundsException("index is " + index + " and length is " + length());
+		return index < gapStart ? buffer[index] : buffer[index + gapEnd - gapStart];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
+	}
+
+	public String substring(int start, int end) {
+		checkRange(start, end);
+		char[] result = new char[end - start];
+		getChars(start, end, result, 0);
+		return new String(result);
+	}
+
+	/**
+	 * Copies the characters in the range [start, end) to the destination array, like String.getChars.
+	 */
+	public void getChars(int start, int end, char[] dest, int destStart) {
+		checkRange(start, end);
+		if (end <= gapStart) {
+			System.arraycopy(buffer, start, dest, destStart, end - start);
+		} else if (start >= gapStart) {
+			int gapLength = gapEnd - gapStart;
+			System.arraycopy(buffer, start + gapLength, dest, destStart, end - start);
+		} else {
+			int beforeGap = gapStart - start;
+			System.arraycopy(buffer, start, dest, destStart, beforeGap);
+			System.arraycopy(buffer, gapEnd, dest, destStart + beforeGap, end - gapStart);
+		}
+	}
+
+	/**
+	 * Returns the entire text. The result is cached until the text changes, so calling this repeatedly
+	 * without changing the text is cheap.
+	 */
+	@Override
+	public String toString() {
+		if (cachedString == null)
+			cachedString = substring(0, length());
+		return cachedString;
+	}
+
+	private void checkRange(int start, int end) {
+		if (start < 0 || end > length() || start > end)
+			throw new IndexOutOfBoundsException("range is [" + start + ", " + end + ") and length is " + length());
+	}
+
+	/**
+	 * Moves the gap to the given position, and makes sure it can hold at least the given number of
+	 * characters.
+	 */
+	private void moveGap(int position, int minGapLength) {
+		if (position < gapStart) {
+			int amount = gapStart - position;
+			System.arraycopy(buffer, position, buffer, gapEnd - amount, amount);
+			gapStart -= amount;
+			gapEnd -= amount;
+		} else if (position > gapStart) {
+			int amount = position - gapStart;
+			System.arraycopy(buffer, gapEnd, buffer, gapStart, amount);
+			gapStart += amount;
+			gapEnd += amount;
+		}
+		if (gapEnd - gapStart < minGapLength) {
+			int length = length();
+			int newCapacity = Math.max(length + minGapLength + MIN_GAP, 2 * buffer.length);
+			char[] newBuffer = Arrays.copyOf(buffer, newCapacity);
+			int afterGap = buffer.length - gapEnd;
+			System.arraycopy(buffer, gapEnd, newBuffer, newCapacity - afterGap, afterGap);
+			buffer = newBuffer;
+			gapEnd = newCapacity - afterGap;
+		}
+	}
+
+	/**
+	 * Replaces the characters in the range [start, end) with the given text. The cursor will be placed
+	 * after the inserted text and the selection will be cleared.
+	 */
+	public void replace(int start, int end, CharSequence text) {
+		checkRange(start, end);
+		int insertLength = text.length();
+		if (start == end && insertLength == 0)
+			return;
+		moveGap(end, insertLength - (end - start));
+
+		// Deleting the characters before the gap is just a matter of growing the gap
+		gapStart = start;
+		for (int index = 0; index < insertLength; index++)
+			buffer[gapStart++] = text.charAt(index);
+		cachedString = null;
+		cursor = start + insertLength;
+		anchor = -1;
+		for (Listener listener : listeners)
+			listener.textChanged(this, start, end - start, insertLength);
+	}
+
+	public void insert(int index, CharSequence text) {
+		replace(index, index, text);
+	}
+
+	public void insert(int index, char character) {
+		replace(index, index, String.valueOf(character));
+	}
+
+	public void delete(int start, int end) {
+		replace(start, end, "");
+	}
+
+	public void append(CharSequence text) {
+		insert(length(), text);
+	}
+
+	public void setText(CharSequence text) {
+		replace(0, length(), text);
+	}
+
+	/**
+	 * Inserts the given text at the cursor. If there is a selection, it will be replaced with the text.
+	 */
+	public void type(CharSequence text) {
+		if (hasSelection())
+			replace(getSelectionStart(), getSelectionEnd(), text);
+		else
+			insert(cursor, text);
+	}
+
+	public void type(char character) {
+		type(String.valueOf(character));
+	}
+
+	/**
+	 * Deletes the selection if there is one, or else the character before the cursor.
+	 */
+	public void backspace() {
+		if (hasSelection())
+			deleteSelection();
+		else if (cursor > 0)
+			delete(cursor - 1, cursor);
+	}
+
+	/**
+	 * Deletes the selection if there is one, or else the character after the cursor.
+	 */
+	public void deleteForward() {
+		if (hasSelection())
+			deleteSelection();
+		else if (cursor < length())
+			delete(cursor, cursor + 1);
+	}
+
+	public int getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * Moves the cursor to the given position and clears the selection.
+	 */
+	public void setCursor(int newCursor) {
+		if (newCursor < 0 || newCursor > length())
+			throw new IndexOutOfBoundsException("cursor is " + newCursor + " and length is " + length());
+		cursor = newCursor;
+		anchor = -1;
+		for (Listener listener : listeners)
+			listener.cursorMoved(this);
+	}
+
+	/**
+	 * Selects the characters in the range [start, end). The cursor will be placed at end.
+	 */
+	public void select(int start, int end) {
+		checkRange(start, end);
+		anchor = start;
+		cursor = end;
+		for (Listener listener : listeners)
+			listener.cursorMoved(this);
+	}
+
+	public void selectAll() {
+		select(0, length());
+	}
+
+	public boolean hasSelection() {
+		return anchor != -1 && anchor != cursor;
+	}
+
+	public int getSelectionStart() {
+		return anchor == -1 ? cursor : Math.min(anchor, cursor);
+	}
+
+	public int getSelectionEnd() {
+		return anchor == -1 ? cursor : Math.max(anchor, cursor);
+	}
+
+	public String getSelectedText() {
+		return substring(getSelectionStart(), getSelectionEnd());
+	}
+
+	public void deleteSelection() {
+		if (hasSelection())
+			delete(getSelectionStart(), getSelectionEnd());
+	}
+
+	/**
+	 * Listens to the changes of a TextBuffer.
+	 */
+	public static interface Listener {
+
+		/**
+		 * Will be called after the text of the buffer changed. The characters in the range
+		 * [start, start + insertedLength) are new, and they replaced removedLength characters. The
+		 * characters before start didn't change.
+		 */
+		void textChanged(TextBuffer buffer, int start, int removedLength, int insertedLength);
+
+		/**
+		 * Will be called after the cursor or selection moved without changing the text.
+		 */
+		default void cursorMoved(TextBuffer buffer) {}
+	}
+}
@@ -24,6 +24,7 @@
 package nl.knokko.gui.util;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.font.LineMetrics;
@@ -45,24 +46,40 @@ public final class TextBuilder {
 	}
 	
 	public static BufferedImage createTexture(String text, Properties p) {
+		Dimension size = getImageSize(text, p);
+		return createTexture(text, p, size.width, size.height);
+	}
+	
+	/**
+	 * Determines the size of the image that createTexture(text, p) creates. The image will be stretched over
+	 * the component that renders it, so this size also determines how the text will be stretched.
+	 */
+	public static Dimension getImageSize(String text, Properties p) {
+		if(p.imageWidth != -1)
+			return new Dimension(p.imageWidth, p.imageHeight);
+		Rectangle2D bounds = FontCache.getStringBounds(p.font, text);
+		return getImageSize(bounds.getWidth(), bounds.getHeight(), p);
+	}
+	
+	/**
+	 * Determines the size of the image that createTexture would create for a text with the given size, in
+	 * pixels of the font of the properties.
+	 */
+	public static Dimension getImageSize(double textWidth, double textHeight, Properties p) {
 		if(p.imageWidth != -1)
-			return createTexture(text, p, p.imageWidth, p.imageHeight);
-		BufferedImage dummyImage = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB);
-		Graphics2D g = dummyImage.createGraphics();
-		g.setFont(p.font);
-		Rectangle2D bounds = g.getFontMetrics().getStringBounds(text, g);
-		if(bounds.getWidth() == 0 || bounds.getHeight() == 0) {
-			return createTexture(text, p, 32, 16);
+			return new Dimension(p.imageWidth, p.imageHeight);
+		if(textWidth == 0 || textHeight == 0) {
+			return new Dimension(32, 16);
 		}//TODO small edge issues
-		double factor = bounds.getWidth() / bounds.getHeight();
+		double factor = textWidth / textHeight;
 		double effectiveHeight = 128 / (1 + 2 * p.borderY + 2 * p.marginY);
 		double preferredWidth = effectiveHeight * factor * (1 + 2 * p.borderX + 2 * p.marginX);
 		int width = (int) Math.ceil(preferredWidth);
 		double upperFactor = width / (1 + 2 * p.borderX + 2 * p.marginX) / effectiveHeight;
 		double lowerFactor = upperFactor / 2;
 		if(upperFactor - factor <= factor - lowerFactor)
-			return createTexture(text, p, Math.max(width, 128), 128);
-		return createTexture(text, p, Math.max(width / 2, 64), 128);
+			return new Dimension(Math.max(width, 128), 128);
+		return new Dimension(Math.max(width / 2, 64), 128);
 	}
 	
 	public static BufferedImage createTexture(String text, Properties p, int width, int height){
@@ -94,16 +111,15 @@ public final class TextBuilder {
 		g.fillRect(maxBX, 0, width - maxBX, height);
 		g.fillRect(minBX, maxBY, maxBX - minBX + 1, height - maxBY);
 		g.setColor(p.textColor);
-		g.setFont(p.font);
-		Rectangle2D bounds = p.font.getStringBounds(text, g.getFontRenderContext());
+		Rectangle2D bounds = FontCache.getStringBounds(p.font, text);
 		if(bounds.getWidth() != 0 && bounds.getHeight() != 0){
 			double factorX = textWidth / bounds.getWidth();
 			double factorY = textHeight / bounds.getHeight();
 			double factor = Math.min(factorX, factorY);
-			Font realFont = new Font(p.font.getFontName(), p.font.getStyle(), (int) (p.font.getSize() * factor));
+			Font realFont = FontCache.getSizedFont(p.font, (int) (p.font.getSize() * factor));
 			g.setFont(realFont);
-			LineMetrics line = realFont.getLineMetrics(text, g.getFontRenderContext());
-			Rectangle2D realBounds = realFont.getStringBounds(text, g.getFontRenderContext());
+			LineMetrics line = FontCache.getLineMetrics(realFont, text);
+			Rectangle2D realBounds = FontCache.getStringBounds(realFont, text);
 			int textX;
 			int textY;
 			if(p.horAlignment == HorAlignment.LEFT)
@@ -262,6 +278,36 @@ public final class TextBuilder {
 			imageWidth = width;
 			imageHeight = height;
 		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Properties) {
+				Properties p = (Properties) other;
+				return p.font.equals(font) && p.textColor.equals(textColor) && p.backgroundColor.equals(backgroundColor)
+						&& p.borderColor.equals(borderColor) && p.horAlignment == horAlignment 
+						&& p.verAlignment == verAlignment && p.borderX == borderX && p.borderY == borderY 
+						&& p.marginX == marginX && p.marginY == marginY && p.imageWidth == imageWidth 
+						&& p.imageHeight == imageHeight;
+			}
+			return false;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = font.hashCode();
+			result = 31 * result + textColor.hashCode();
+			result = 31 * result + backgroundColor.hashCode();
+			result = 31 * result + borderColor.hashCode();
+			result = 31 * result + horAlignment.hashCode();
+			result = 31 * result + verAlignment.hashCode();
+			result = 31 * result + Float.floatToIntBits(borderX);
+			result = 31 * result + Float.floatToIntBits(borderY);
+			result = 31 * result + Float.floatToIntBits(marginX);
+			result = 31 * result + Float.floatToIntBits(marginY);
+			result = 31 * result + imageWidth;
+			result = 31 * result + imageHeight;
+			return result;
+		}
 	}
 	
 	public static enum HorAlignment {
@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.util;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import nl.knokko.gui.texture.GuiTexture;
+import nl.knokko.gui.texture.loader.GuiTextureLoader;
+import nl.knokko.gui.util.TextBuilder.Properties;
+
+/**
+ * Caches the textures created by TextBuilder, so that components that show the same text with the same
+ * properties share 1 texture instead of each creating their own. The textures are only weakly referenced,
+ * so a texture will be forgotten once no component uses it anymore. Every GuiWindow has its own cache, see
+ * GuiWindow.getTextTextureCache().
+ * 
+ * The methods of this class are synchronized, so it can be used from multiple threads.
+ * 
+ * In async mode, the request methods will create missing textures on a small pool of worker threads rather
+ * than on the calling thread. Multiple requests for the same missing texture share the same job. The
+ * textures will be loaded and passed to the receivers by the window executor, which is normally the
+ * runLater method of the window.
+ * 
+ * The batch method can be used to collect all requests made while adding many components at once. The
+ * missing textures of such a batch will be created in parallel before the batch method returns.
+ */
+public class TextTextureCache {
+	
+	private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	
+	private final GuiTextureLoader textureLoader;
+	private final Executor windowExecutor;
+	
+	private final Map<Key,List<Consumer<GuiTexture>>> pendingRequests = new HashMap<Key,List<Consumer<GuiTexture>>>();
+	private ExecutorService workers;
+	
+	private boolean async;
+	
+	private Thread batchThread;
+	private Map<Key,List<Consumer<GuiTexture>>> batchRequests;
+	
+	private final Map<Key,Entry> textures = new HashMap<Key,Entry>();
+	private final ReferenceQueue<GuiTexture> collectedTextures = new ReferenceQueue<GuiTexture>();
+	
+	private long hits;
+	private long misses;
+	private long sharedRequests;
+	
+	/**
+	 * @param textureLoader The texture loader to load the created images with
+	 * @param windowExecutor The executor that will load the textures of async requests and pass them on to
+	 * the receivers. It should execute the tasks on the thread that updates the window.
+	 */
+	public TextTextureCache(GuiTextureLoader textureLoader, Executor windowExecutor) {
+		this.textureLoader = textureLoader;
+		this.windowExecutor = windowExecutor;
+	}
+	
+	/**
+	 * Enables or disables async mode. Async mode is disabled by default.
+	 */
+	public synchronized void setAsync(boolean async) {
+		this.async = async;
+	}
+	
+	public synchronized boolean isAsync() {
+		return async;
+	}
+	
+	/**
+	 * Runs the given requester and collects the requests it makes on the current thread, rather than
+	 * handling them one by one. After the requester has finished, the missing textures will be created in
+	 * parallel on the common fork join pool. Then, the textures will be loaded on the current thread and 
+	 * passed to their receivers before this method returns.
+	 * 
+	 * If this method is called while the current thread is already running a batch, the requests will
+	 * simply be added to that batch.
+	 */
+	public void batch(Runnable requester) {
+		synchronized (this) {
+			if (batchThread == Thread.currentThread()) {
+				requester.run();
+				return;
+			}
+			while (batchThread != null) {
+				try {
+					wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			batchThread = Thread.currentThread();
+			batchRequests = new HashMap<Key,List<Consumer<GuiTexture>>>();
+		}
+		Map<Key,List<Consumer<GuiTexture>>> requests;
+		try {
+			requester.run();
+		} finally {
+			synchronized (this) {
+				requests = batchRequests;
+				batchRequests = null;
+				batchThread = null;
+				notifyAll();
+			}
+		}
+		
+		List<Key> keys = new ArrayList<Key>(requests.keySet());
+		List<BufferedImage> images = keys.parallelStream().map(Key::createImage).collect(Collectors.toList());
+		for (int index = 0; index < keys.size(); index++) {
+			Key key = keys.get(index);
+			GuiTexture texture;
+			synchronized (this) {
+				texture = getCached(key);
+				if (texture == null) {
+					texture = textureLoader.loadTexture(images.get(index));
+					textures.put(key, new Entry(key, texture, collectedTextures));
+				}
+			}
+			for (Consumer<GuiTexture> receiver : requests.get(key)) {
+				receiver.accept(texture);
+			}
+		}
+	}
+	
+	/**
+	 * Requests the texture of TextBuilder.createTexture(text, properties). If this cache has the texture
+	 * already, or if async mode is disabled, the receiver will be called before this method returns. 
+	 * Otherwise, the receiver will be called by the window executor once the texture has been created.
+	 * Requests that are made during a batch will be handled at the end of that batch instead.
+	 */
+	public void request(String text, Properties properties, Consumer<GuiTexture> receiver) {
+		request(text, properties, -1, -1, receiver);
+	}
+	
+	/**
+	 * Requests the texture of TextBuilder.createTexture(text, properties, width, height). If this cache has
+	 * the texture already, or if async mode is disabled, the receiver will be called before this method
+	 * returns. Otherwise, the receiver will be called by the window executor once the texture has been
+	 * created. Requests that are made during a batch will be handled at the end of that batch instead.
+	 */
+	public void request(String text, Properties properties, int width, int height, Consumer<GuiTexture> receiver) {
+		GuiTexture texture;
+		synchronized (this) {
+			removeCollectedEntries();
+			Key key = new Key(text, properties, width, height);
+			texture = getCached(key);
+			if (texture == null && batchThread == Thread.currentThread()) {
+				List<Consumer<GuiTexture>> receivers = batchRequests.get(key);
+				if (receivers == null) {
+					misses++;
+					receivers = new ArrayList<Consumer<GuiTexture>>(1);
+					batchRequests.put(key, receivers);
+				} else {
+					sharedRequests++;
+				}
+				receivers.add(receiver);
+				return;
+			}
+			if (texture == null && async) {
+				List<Consumer<GuiTexture>> receivers = pendingRequests.get(key);
+				if (receivers == null) {
+					misses++;
+					receivers = new ArrayList<Consumer<GuiTexture>>(1);
+					pendingRequests.put(key, receivers);
+					getWorkers().execute(() -> createAsync(key));
+				} else {
+					sharedRequests++;
+				}
+				receivers.add(receiver);
+				return;
+			}
+		}
+		if (texture == null) {
+			texture = get(text, properties, width, height);
+		} else {
+			synchronized (this) {
+				hits++;
+			}
+		}
+		receiver.accept(texture);
+	}
+	
+	private ExecutorService getWorkers() {
+		if (workers == null) {
+			workers = Executors.newFixedThreadPool(WORKER_COUNT, task -> {
+				Thread thread = new Thread(task, "TextTextureCache worker");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return workers;
+	}
+	
+	/**
+	 * Creates the image for the given key on a worker thread and lets the window executor install it.
+	 */
+	private void createAsync(Key key) {
+		BufferedImage image;
+		try {
+			image = key.createImage();
+		} catch (RuntimeException ex) {
+			ex.printStackTrace();
+			synchronized (this) {
+				pendingRequests.remove(key);
+			}
+			return;
+		}
+		windowExecutor.execute(() -> {
+			GuiTexture texture;
+			List<Consumer<GuiTexture>> receivers;
+			synchronized (this) {
+				receivers = pendingRequests.remove(key);
+				
+				// The request was dropped because the cache was shut down
+				if (receivers == null)
+					return;
+				
+				// The texture could have been created by a synchronous call to get in the meantime
+				texture = getCached(key);
+				if (texture == null) {
+					texture = textureLoader.loadTexture(image);
+					textures.put(key, new Entry(key, texture, collectedTextures));
+				}
+			}
+			for (Consumer<GuiTexture> receiver : receivers) {
+				receiver.accept(texture);
+			}
+		});
+	}
+	
+	private GuiTexture getCached(Key key) {
+		Entry entry = textures.get(key);
+		return entry == null ? null : entry.get();
+	}
+	
+	/**
+	 * Gets the texture of TextBuilder.createTexture(text, properties), or creates it if this cache doesn't
+	 * have it.
+	 */
+	public GuiTexture get(String text, Properties properties) {
+		return get(text, properties, -1, -1);
+	}
+	
+	/**
+	 * Gets the texture of TextBuilder.createTexture(text, properties, width, height), or creates it if this
+	 * cache doesn't have it. A width and height of -1 means that the size will be chosen by the TextBuilder.
+	 */
+	public GuiTexture get(String text, Properties properties, int width, int height) {
+		Key key = new Key(text, properties, width, height);
+		synchronized (this) {
+			removeCollectedEntries();
+			GuiTexture texture = getCached(key);
+			if (texture != null) {
+				hits++;
+				return texture;
+			}
+			misses++;
+		}
+		
+		// Don't hold the lock while creating the image, so that other requests don't need to wait for it
+		BufferedImage image = key.createImage();
+		synchronized (this) {
+			
+			// Another thread could have created the same texture in the meantime
+			GuiTexture texture = getCached(key);
+			if (texture == null) {
+				texture = textureLoader.loadTexture(image);
+				textures.put(key, new Entry(key, texture, collectedTextures));
+			}
+			return texture;
+		}
+	}
+	
+	/**
+	 * Stops the worker threads of async mode. Async requests that haven't been created yet will be dropped.
+	 * This cache can still be used afterwards, and new workers will be started when they are needed.
+	 */
+	public synchronized void shutdown() {
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+			pendingRequests.clear();
+		}
+	}
+	
+	private void removeCollectedEntries() {
+		Entry collected = (Entry) collectedTextures.poll();
+		while (collected != null) {
+			
+			// The entry might have been replaced by a new entry for the same key already
+			if (textures.get(collected.key) == collected) {
+				textures.remove(collected.key);
+			}
+			collected = (Entry) collectedTextures.poll();
+		}
+	}
+	
+	/**
+	 * @return The number of async or batched requests that were combined with an earlier request for the
+	 * same texture that was still in progress
+	 */
+	public synchronized long getSharedRequests() {
+		return sharedRequests;
+	}
+	
+	/**
+	 * @return The number of textures that are currently in this cache
+	 */
+	public synchronized int size() {
+		removeCollectedEntries();
+		return textures.size();
+	}
+	
+	/**
+	 * @return The number of times a requested texture was already in this cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return The number of times a requested texture had to be created
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	private static class Entry extends WeakReference<GuiTexture> {
+		
+		private final Key key;
+		
+		private Entry(Key key, GuiTexture texture, ReferenceQueue<GuiTexture> queue) {
+			super(texture, queue);
+			this.key = key;
+		}
+	}
+	
+	private static class Key {
+		
+		private final String text;
+		private final Properties properties;
+		private final int width;
+		private final int height;
+		
+		private Key(String text, Properties properties, int width, int height) {
+			this.text = text;
+			this.properties = properties;
+			this.width = width;
+			this.height = height;
+		}
+		
+		private BufferedImage createImage() {
+			if (width == -1 && height == -1) {
+				return TextBuilder.createTexture(text, properties);
+			} else {
+				return TextBuilder.createTexture(text, properties, width, height);
+			}
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof Key) {
+				Key key = (Key) other;
+				return key.text.equals(text) && key.properties.equals(properties) 
+						&& key.width == width && key.height == height;
+			}
+			return false;
+		}
+		
+		@Override
+		public int hashCode() {
+			return text.hashCode() + 31 * properties.hashCode() + 17 * width + height;
+		}
+	}
+}
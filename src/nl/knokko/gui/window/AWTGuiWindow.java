@@ -25,8 +25,9 @@ package nl.knokko.gui.window;
 
 import java.awt.Frame;
 import java.awt.Insets;
-import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -34,7 +35,11 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
@@ -70,8 +75,38 @@ public class AWTGuiWindow extends GuiWindow {
 	private final AWTGuiRenderer guiRenderer;
 	private final CharBuilder charBuilder;
 	
-	private int prevMouseX;
-	private int prevMouseY;
+	/**
+	 * The last known mouse position in frame pixels, as reported by the mouse events. It is (-1, -1) if the
+	 * mouse is not within the frame. Only the EDT writes these fields.
+	 */
+	private int eventMouseX = -1;
+	private int eventMouseY = -1;
+	
+	/**
+	 * The size and insets of the frame, cached by the component listener so that the mouse coordinates can
+	 * be computed without taking the AWT tree lock
+	 */
+	private int frameWidth;
+	private int frameHeight;
+	private Insets frameInsets = new Insets(0, 0, 0, 0);
+	
+	/**
+	 * The mouse state of the current frame. It is taken at the start of every update from the mouse events,
+	 * so the component states can read it as often as they like without any native calls.
+	 */
+	private boolean mouseOver;
+	private float mouseX = Float.NaN;
+	private float mouseY = Float.NaN;
+	private float mouseDX;
+	private float mouseDY;
+	
+	private int prevMouseX = -1;
+	private int prevMouseY = -1;
+	
+	private final AtomicBoolean updatePending = new AtomicBoolean();
+	private final AtomicBoolean renderPending = new AtomicBoolean();
+	private final AtomicLong coalescedUpdates = new AtomicLong();
+	private final AtomicLong coalescedRenders = new AtomicLong();
 	
 	public AWTGuiWindow(){
 		textureLoader = new AWTTextureLoader();
@@ -86,45 +121,120 @@ public class AWTGuiWindow extends GuiWindow {
 	
 	public void setFrame(JFrame frame){
 		this.frame = frame;
+		invokeLater(this::updateFrameGeometry);
 		markChange();
 	}
 	
+	private void updateFrameGeometry() {
+		frameWidth = frame.getWidth();
+		frameHeight = frame.getHeight();
+		frameInsets = frame.getInsets();
+	}
+	
+	private float toMouseX(int x) {
+		return (float) (x - frameInsets.left) / (frameWidth - 1 - frameInsets.right - frameInsets.left);
+	}
+	
+	private float toMouseY(int y) {
+		return 1 - (float) (y - frameInsets.top) / (frameHeight - 1 - frameInsets.top - frameInsets.bottom);
+	}
+	
+	private void setEventMouse(int x, int y) {
+		if (x >= 0 && y >= 0 && x < frameWidth && y < frameHeight) {
+			eventMouseX = x;
+			eventMouseY = y;
+		} else {
+			eventMouseX = -1;
+			eventMouseY = -1;
+		}
+		wakeUp();
+	}
+	
+	/**
+	 * Takes the mouse snapshot for the current frame from the last mouse event and notifies the window if
+	 * the mouse moved.
+	 */
+	private void takeMouseSnapshot() {
+		int x = eventMouseX;
+		int y = eventMouseY;
+		float prevX = mouseX;
+		float prevY = mouseY;
+		if (x != -1) {
+			mouseOver = true;
+			mouseX = toMouseX(x);
+			mouseY = toMouseY(y);
+		} else {
+			mouseOver = false;
+			mouseX = Float.NaN;
+			mouseY = Float.NaN;
+		}
+		if (x != -1 && prevMouseX != -1) {
+			mouseDX = (float) (x - prevMouseX) / (frameWidth - frameInsets.right - frameInsets.left);
+			mouseDY = (float) -(y - prevMouseY) / (frameHeight - frameInsets.top - frameInsets.bottom);
+		} else {
+			mouseDX = 0;
+			mouseDY = 0;
+		}
+		if (x != prevMouseX || y != prevMouseY) {
+			handleMouseMove(prevX, prevY, mouseX, mouseY);
+		}
+		prevMouseX = x;
+		prevMouseY = y;
+	}
+	
+	/**
+	 * @return true if the mouse is within the frame during the current frame
+	 */
+	public boolean isMouseOver() {
+		return mouseOver;
+	}
+	
 	public JFrame getFrame(){
 		return frame;
 	}
 	
 	@Override
-	protected void preUpdate() {}
+	protected void preUpdate() {
+		takeMouseSnapshot();
+	}
 	
 	@Override
-	protected void postUpdate(){
-		Point mouse = frame.getMousePosition();
-		if (mouse != null) {
-			if (prevMouseX != mouse.x || prevMouseY != mouse.y) {
-				markChange();
-			}
-			prevMouseX = mouse.x;
-			prevMouseY = mouse.y;
-		} else {
-			if (prevMouseX != -1 || prevMouseY != -1) {
-				markChange();
-			}
-			prevMouseX = -1;
-			prevMouseY = -1;
-		}
+	protected void postUpdate() {}
+	
+	private static boolean isEventQueueThread() {
+		return Thread.currentThread().getName().contains("AWT-EventQueue-");
 	}
 	
 	private void invokeLater(Runnable action) {
-		if (Thread.currentThread().getName().contains("AWT-EventQueue-")) {
+		if (isEventQueueThread()) {
 			action.run();
 		} else {
 			SwingUtilities.invokeLater(action);
 		}
 	}
 	
+	/**
+	 * Like invokeLater, but doesn't queue the action if the previous action with the same pending flag is
+	 * still waiting in the event queue. Since the action hasn't started yet, it will see all changes that were
+	 * made until now, so the new action can simply be dropped. This prevents the event queue from filling up
+	 * when the EDT can't keep up with the run loop.
+	 */
+	private void invokeCoalesced(AtomicBoolean pending, AtomicLong coalescedCounter, Runnable action) {
+		if (isEventQueueThread()) {
+			action.run();
+		} else if (pending.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(() -> {
+				pending.set(false);
+				action.run();
+			});
+		} else {
+			coalescedCounter.incrementAndGet();
+		}
+	}
+	
 	@Override
 	protected void directRender(){
-		invokeLater(() -> {
+		invokeCoalesced(renderPending, coalescedRenders, () -> {
 			mainComponent.render(guiRenderer);
 			guiRenderer.maybeRenderNow();
 		});
@@ -132,11 +242,27 @@ public class AWTGuiWindow extends GuiWindow {
 	
 	@Override
 	public void update() {
-		invokeLater(() -> {
+		invokeCoalesced(updatePending, coalescedUpdates, () -> {
 			super.update();
 		});
 	}
 	
+	/**
+	 * @return The number of updates that were dropped because the previous update was still waiting for the
+	 * EDT
+	 */
+	public long getCoalescedUpdates() {
+		return coalescedUpdates.get();
+	}
+	
+	/**
+	 * @return The number of renders that were dropped because the previous render was still waiting for the
+	 * EDT
+	 */
+	public long getCoalescedRenders() {
+		return coalescedRenders.get();
+	}
+	
 	@Override
 	public void setMainComponent(GuiComponent component) {
 		invokeLater(() -> {
@@ -174,6 +300,9 @@ public class AWTGuiWindow extends GuiWindow {
 			frame.addMouseListener(l);
 			frame.addMouseWheelListener(l);
 			frame.addMouseMotionListener(l);
+			frame.addWindowListener(l);
+			frame.addComponentListener(l);
+			updateFrameGeometry();
 		});
 	}
 	
@@ -204,6 +333,9 @@ public class AWTGuiWindow extends GuiWindow {
 			frame.addMouseListener(l);
 			frame.addMouseWheelListener(l);
 			frame.addMouseMotionListener(l);
+			frame.addWindowListener(l);
+			frame.addComponentListener(l);
+			updateFrameGeometry();
 		});
 	}
 	
@@ -230,11 +362,7 @@ public class AWTGuiWindow extends GuiWindow {
 					long startTime = System.nanoTime();
 					update();
 					render();
-					long sleepTime = startTime + frameTime - System.nanoTime();
-					if(sleepTime > 0){
-						long millis = sleepTime / 1000000;
-						Thread.sleep(millis, (int) (sleepTime - millis * 1000000));
-					}//if sleepTime smaller than 0, we are behind schedule
+					awaitNextIteration(startTime, frameTime);
 					if(listener != null)
 						listener.postRunLoop();
 				}
@@ -262,56 +390,62 @@ public class AWTGuiWindow extends GuiWindow {
 	
 	@Override
 	public float getMouseX() {
-		Point mouse = frame.getMousePosition();
-		if(mouse == null)
-			return Float.NaN;
-		Insets insets = frame.getInsets();
-		return (float) (mouse.x - insets.left) / (frame.getWidth() - 1 - insets.right - insets.left);
+		return mouseX;
 	}
 	
 	@Override
 	public float getMouseY() {
-		Point mouse = frame.getMousePosition();
-		if(mouse == null)
-			return Float.NaN;
-		Insets insets = frame.getInsets();
-		return 1 - (float) (mouse.y - insets.top) / (frame.getHeight() - 1 - insets.top - insets.bottom);
+		return mouseY;
 	}
 	
 	@Override
 	public float getMouseDX() {
-		Point mouse = frame.getMousePosition();
-		Insets insets = frame.getInsets();
-		if (mouse != null && prevMouseX != -1)
-			return (float) (mouse.x - prevMouseX) / (frame.getWidth() - insets.right - insets.left);
-		return 0;
+		return mouseDX;
 	}
 	
 	@Override
 	public float getMouseDY() {
-		Point mouse = frame.getMousePosition();
-		Insets insets = frame.getInsets();
-		if (mouse != null && prevMouseY != -1)
-			return (float) -(mouse.y - prevMouseY) / (frame.getHeight() - insets.top - insets.bottom);
-		return 0;
+		return mouseDY;
 	}
 	
-	private class Listener implements KeyListener, MouseListener, MouseWheelListener, MouseMotionListener {
+	private class Listener extends WindowAdapter implements KeyListener, MouseListener, MouseWheelListener, 
+			MouseMotionListener, ComponentListener {
+		
+		@Override
+		public void componentResized(ComponentEvent event) {
+			updateFrameGeometry();
+			markChange();
+		}
+		
+		@Override
+		public void componentMoved(ComponentEvent event) {}
+		
+		@Override
+		public void componentShown(ComponentEvent event) {
+			updateFrameGeometry();
+		}
+		
+		@Override
+		public void componentHidden(ComponentEvent event) {}
+		
+		@Override
+		public void windowClosed(WindowEvent event) {
+			
+			// Let the run loop notice that the frame is no longer displayable
+			wakeUp();
+		}
 
-		public void mouseDragged(MouseEvent e) {}
+		public void mouseDragged(MouseEvent event) {
+			setEventMouse(event.getX(), event.getY());
+		}
 
-		public void mouseMoved(MouseEvent e) {}
+		public void mouseMoved(MouseEvent event) {
+			setEventMouse(event.getX(), event.getY());
+		}
 
 		public void mouseWheelMoved(MouseWheelEvent event) {
 			//well... I will need magic numbers sometimes...
-			float amount = event.getUnitsToScroll() * -0.01f;
-			if(listener != null)
-				amount = listener.preScroll(amount);
-			if(amount != 0){
-				mainComponent.scroll(amount);
-				if(listener != null)
-					listener.postScroll(amount);
-			}
+			handleScroll(event.getUnitsToScroll() * -0.01f);
 		}
 
 		public void mouseClicked(MouseEvent event) {
@@ -324,59 +458,45 @@ public class AWTGuiWindow extends GuiWindow {
 
 		public void mousePressed(MouseEvent event) {
 			input.setMouseDown(AWTMouseConverter.getMouseButton(event.getButton()));
+			wakeUp();
 		}
 
 		public void mouseReleased(MouseEvent event) {
-			float x = getMouseX(frame, event.getX());
-			float y = getMouseY(frame, event.getY());
+			float x = toMouseX(event.getX());
+			float y = toMouseY(event.getY());
 			int button = AWTMouseConverter.getMouseButton(event.getButton());
-			if(listener == null || !listener.preClick(x, y, button)){
-				mainComponent.click(x, y, button);
-				if(listener != null)
-					listener.postClick(x, y, button);
-			}
-			input.setMouseUp(AWTMouseConverter.getMouseButton(event.getButton()));
+			handleClick(x, y, button);
+			input.setMouseUp(button);
 		}
 
-		public void mouseEntered(MouseEvent e) {}
+		public void mouseEntered(MouseEvent event) {
+			setEventMouse(event.getX(), event.getY());
+		}
 
-		public void mouseExited(MouseEvent e) {}
+		public void mouseExited(MouseEvent event) {
+			setEventMouse(-1, -1);
+		}
 
 		public void keyTyped(KeyEvent event) {
 			char c = event.getKeyChar();
-			if(c != KeyEvent.CHAR_UNDEFINED && CharacterFilter.approve(c) && (listener == null || !listener.preKeyPressed(c))){
-				mainComponent.keyPressed(c);
-				if(listener != null)
-					listener.postKeyPressed(c);
-			}
+			if(c != KeyEvent.CHAR_UNDEFINED && CharacterFilter.approve(c))
+				handleKeyPressed(c);
 		}//LWJGL doesn't have this event, but keyPressed doesn't give a meaningful character so I will have to use this event
 		//I can't find a way to get this equal in awt and lwjgl
 
 		public void keyPressed(KeyEvent event) {
 			int[] codes = AWTConverter.getDirect(event.getKeyCode());
 			if(codes != null && codes[0] != KeyCode.UNDEFINED){
-				for(int code : codes){
-					if(listener == null || !listener.preKeyPressed(code)){
-						mainComponent.keyPressed(code);
-						if(listener != null)
-							listener.postKeyPressed(code);
-					}
-					input.setKeyDown(code);
-				}
+				for(int code : codes)
+					handleKeyPressed(code);
 			}
 		}
 
 		public void keyReleased(KeyEvent event) {
 			int[] codes = AWTConverter.getDirect(event.getKeyCode());
 			if(codes != null && codes[0] != KeyCode.UNDEFINED){
-				for(int code : codes){
-					if(listener == null || !listener.preKeyReleased(code)){
-						mainComponent.keyReleased(code);
-						input.setKeyUp(code);
-						if(listener != null)
-							listener.postKeyReleased(code);
-					}
-				}
+				for(int code : codes)
+					handleKeyReleased(code);
 			}
 		}
 	}
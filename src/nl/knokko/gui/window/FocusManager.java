@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import nl.knokko.gui.component.FocusableComponent;
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.component.state.GuiComponentState;
+import nl.knokko.gui.keycode.KeyCode;
+import nl.knokko.gui.mousecode.MouseCode;
+import nl.knokko.gui.testing.EditableComponent;
+
+/**
+ * Keeps track of the component that has the keyboard focus of a window. Key events that the focused
+ * component consumes will be given directly to that component rather than being passed through the entire
+ * component tree. The other key events will be passed through the component tree like usual. Every
+ * GuiWindow has its own FocusManager, see GuiWindow.getFocusManager().
+ *
+ * The focus manager also handles TAB (and SHIFT + TAB) while a component has the focus. It moves the focus
+ * to the next (or previous) editable component of the main component, from top to bottom and from left to
+ * right. The order of the editable components is computed only once and reused until invalidateFocusOrder()
+ * is called.
+ */
+public class FocusManager {
+
+	/**
+	 * The order of TAB traversal: from top to bottom (big y to small y), and from left to right
+	 */
+	private static final Comparator<Point2D.Float> FOCUS_ORDER = (a, b) -> {
+		if (a.y != b.y) {
+			return a.y > b.y ? -1 : 1;
+		}
+		return Float.compare(a.x, b.x);
+	};
+
+	private final GuiWindow window;
+
+	private FocusableComponent focused;
+
+	/**
+	 * The editable locations of the main component, sorted by FOCUS_ORDER, or null if it needs to be
+	 * computed again
+	 */
+	private List<EditableComponent.Pair> focusOrder;
+
+	public FocusManager(GuiWindow window) {
+		this.window = window;
+	}
+
+	/**
+	 * @return The component that currently has the focus, or null if no component has the focus
+	 */
+	public FocusableComponent getFocused() {
+		return focused;
+	}
+
+	/**
+	 * Lets the given component have the focus. If another component had the focus, its loseFocus method will
+	 * be called.
+	 * @param component The component that got the focus
+	 */
+	public void setFocused(FocusableComponent component) {
+		FocusableComponent previous = focused;
+		focused = component;
+		if (previous != null && previous != component) {
+			previous.loseFocus();
+		}
+	}
+
+	/**
+	 * Removes the focus from the given component if it has the focus. This method won't call its loseFocus
+	 * method.
+	 * @param component The component that lost the focus
+	 */
+	public void clearFocus(FocusableComponent component) {
+		if (focused == component) {
+			focused = null;
+		}
+	}
+
+	/**
+	 * Forgets the focused component without calling its loseFocus method, for instance because it is no
+	 * longer part of the window.
+	 */
+	public void clearFocus() {
+		focused = null;
+	}
+
+	/**
+	 * Forgets the focused component without calling its loseFocus method if it is the given component or one
+	 * of its descendants. This should be called before a component is removed from the window or replaced,
+	 * because the focused component would otherwise keep receiving key events after it was detached.
+	 * @param component The component that is about to be removed or replaced
+	 */
+	public void clearFocusWithin(GuiComponent component) {
+		if (focused == null) {
+			return;
+		}
+		if (focused == component) {
+			focused = null;
+			return;
+		}
+		GuiComponentState state = component.getState();
+		if (state == null) {
+			return;
+		}
+		for (GuiComponentState current = focused.getState(); current != null; current = current.getParent()) {
+			if (current == state) {
+				focused = null;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Notifies this focus manager that the editable components of the window have changed or moved, so that
+	 * the TAB order needs to be computed again.
+	 */
+	public void invalidateFocusOrder() {
+		focusOrder = null;
+	}
+
+	private List<EditableComponent.Pair> getFocusOrder() {
+		if (focusOrder == null) {
+			GuiComponent mainComponent = window.getMainComponent();
+			if (mainComponent instanceof EditableComponent) {
+				focusOrder = new ArrayList<EditableComponent.Pair>(
+						((EditableComponent) mainComponent).getEditableLocations());
+				focusOrder.sort((a, b) -> FOCUS_ORDER.compare(a.getLocation(), b.getLocation()));
+			} else {
+				focusOrder = Collections.emptyList();
+			}
+		}
+		return focusOrder;
+	}
+
+	/**
+	 * Moves the focus to the next (or previous) editable component of the main component.
+	 * @param backwards True to move to the previous component, false to move to the next component
+	 * @return true if the focus was moved, false if there is no next (or previous) component
+	 */
+	public boolean moveFocus(boolean backwards) {
+		if (focused == null) {
+			return false;
+		}
+		GuiComponentState state = focused.getState();
+		Point2D.Float location = new Point2D.Float(state.getMidX(), state.getMidY());
+		List<EditableComponent.Pair> order = getFocusOrder();
+
+		int low = 0;
+		int high = order.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (FOCUS_ORDER.compare(order.get(middle).getLocation(), location) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		// low is now the index of the first location that is not before the focused component
+		int targetIndex;
+		if (backwards) {
+			targetIndex = low - 1;
+		} else {
+			targetIndex = low;
+			while (targetIndex < order.size()
+					&& FOCUS_ORDER.compare(order.get(targetIndex).getLocation(), location) == 0) {
+				targetIndex++;
+			}
+		}
+		if (targetIndex < 0 || targetIndex >= order.size()) {
+			return false;
+		}
+
+		EditableComponent.Pair target = order.get(targetIndex);
+		if (target.getComponent() instanceof FocusableComponent) {
+			((FocusableComponent) target.getComponent()).setFocus();
+		} else {
+			Point2D.Float targetLocation = target.getLocation();
+			window.getMainComponent().click(targetLocation.x, targetLocation.y, MouseCode.BUTTON_LEFT);
+		}
+		return true;
+	}
+
+	/**
+	 * Gives the typed character to the focused component if it consumes the character.
+	 * @return true if the character was consumed, false if it should be passed through the component tree
+	 */
+	public boolean keyPressed(char character) {
+		if (focused != null && focused.consumesKey(character)) {
+			focused.keyPressed(character);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gives the key press to the focused component if it consumes the key. TAB will be used to move the focus.
+	 * @return true if the key press was consumed, false if it should be passed through the component tree
+	 */
+	public boolean keyPressed(int keyCode) {
+		if (focused == null) {
+			return false;
+		}
+		if (keyCode == KeyCode.KEY_TAB) {
+			moveFocus(window.getInput().isKeyDown(KeyCode.KEY_SHIFT));
+			return true;
+		}
+		if (focused.consumesKey(keyCode)) {
+			focused.keyPressed(keyCode);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gives the key release to the focused component if it consumes the key.
+	 * @return true if the key release was consumed, false if it should be passed through the component tree
+	 */
+	public boolean keyReleased(int keyCode) {
+		if (focused != null && (keyCode == KeyCode.KEY_TAB || focused.consumesKey(keyCode))) {
+			focused.keyReleased(keyCode);
+			return true;
+		}
+		return false;
+	}
+}
@@ -23,11 +23,16 @@
  *******************************************************************************/
 package nl.knokko.gui.window;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
 import nl.knokko.gui.component.GuiComponent;
 import nl.knokko.gui.component.state.GuiComponentState;
 import nl.knokko.gui.render.GuiRenderer;
 import nl.knokko.gui.texture.loader.GuiTextureLoader;
 import nl.knokko.gui.util.CharBuilder;
+import nl.knokko.gui.util.TextTextureCache;
 import nl.knokko.gui.window.input.WindowInput;
 
 /**
@@ -44,9 +49,25 @@ public abstract class GuiWindow {
 	
 	protected boolean renderContinuously;
 	protected boolean needsRender;
+	protected boolean retainedRendering;
+	protected boolean hoverTracking;
 	
 	protected boolean shouldStopRunning;
 	
+	protected boolean eventDriven;
+	
+	private TextTextureCache textTextureCache;
+	
+	private final FocusManager focusManager = new FocusManager(this);
+	
+	private long layoutVersion;
+	
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	
+	private final Object wakeLock = new Object();
+	private boolean wakeUpRequested;
+	private long wakeUpTime = Long.MAX_VALUE;
+	
 	public GuiWindow(){
 		input = new WindowInput();
 	}
@@ -64,12 +85,165 @@ public abstract class GuiWindow {
 		getRenderer().setRenderAlways(value);
 	}
 	
+	/**
+	 * Enables or disables retained rendering. When retained rendering is enabled, every GuiMenu will remember
+	 * the render commands of its components and reuse them until the component or one of its descendants is
+	 * invalidated, so that a single change doesn't require the entire component tree to be rendered again.
+	 * All components of this library invalidate their state when their appearance changes, but custom
+	 * components must call invalidate() on their state rather than markChange() on this window when they
+	 * change. Retained rendering is disabled by default.
+	 * @param value True to enable retained rendering, false to disable it
+	 */
+	public void setRetainedRendering(boolean value) {
+		retainedRendering = value;
+		markChange();
+	}
+	
+	public boolean isRetainedRendering() {
+		return retainedRendering;
+	}
+	
+	/**
+	 * Enables or disables hover tracking. When hover tracking is disabled, the window will render again
+	 * whenever the mouse moves. When it is enabled, a mouse movement will only invalidate the components
+	 * whose hover region the mouse entered or left (see GuiRenderer.trackHover), so moving the mouse over
+	 * parts of the window that don't react to it won't cause any rendering. All components of this library
+	 * that react to the mouse register their hover region, but custom components that look at the mouse
+	 * position while rendering must do so as well. Hover tracking works best in combination with retained
+	 * rendering. It is disabled by default.
+	 * @param value True to enable hover tracking, false to disable it
+	 */
+	public void setHoverTracking(boolean value) {
+		hoverTracking = value;
+		markChange();
+	}
+	
+	public boolean isHoverTracking() {
+		return hoverTracking;
+	}
+	
+	/**
+	 * Window implementations should call this method when the mouse has moved. The coordinates are NaN if
+	 * the mouse is outside the window.
+	 */
+	protected void handleMouseMove(float prevX, float prevY, float x, float y) {
+		if (hoverTracking) {
+			getRenderer().getHoverRegions().mouseMoved(prevX, prevY, x, y);
+		} else {
+			markChange();
+		}
+	}
+	
 	/**
 	 * Notifies the window that something changed so that it should render again. Calling this only has
 	 * effect if the window is not in continuous render mode.
 	 */
 	public void markChange() {
 		needsRender = true;
+		wakeUp();
+	}
+	
+	/**
+	 * @return A number that is increased whenever the bounds of a component in this window may have changed.
+	 * Dynamic component states use this to find out whether their cached absolute bounds are still valid.
+	 */
+	public long getLayoutVersion() {
+		return layoutVersion;
+	}
+	
+	/**
+	 * Notifies the window that the bounds of one or more of its components may have changed, for instance
+	 * because a menu scrolled or a component was moved or attached. This invalidates the cached absolute
+	 * bounds of all dynamic component states of this window.
+	 */
+	public void markLayoutChange() {
+		layoutVersion++;
+	}
+	
+	/**
+	 * Enables or disables the event-driven run loop. When it is enabled, the run loop will sleep until
+	 * something happens (user input, a call to markChange() or wakeUp(), or a wake up time requested with
+	 * requestWakeUp) rather than updating and rendering fps times per second. The loop will still tick at
+	 * the fixed rate while the window renders continuously or while a key or mouse button is held down.
+	 * Components that animate should call requestWakeUp during their update to keep the loop ticking.
+	 * This is disabled by default.
+	 * @param value True to enable the event-driven run loop, false to tick at a fixed rate
+	 */
+	public void setEventDriven(boolean value) {
+		eventDriven = value;
+		wakeUp();
+	}
+	
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+	
+	/**
+	 * Makes sure the run loop will do another iteration as soon as possible, even if it is event-driven.
+	 * This method can be called from any thread.
+	 */
+	public void wakeUp() {
+		synchronized (wakeLock) {
+			wakeUpRequested = true;
+			wakeLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Makes sure the run loop will do another iteration after (about) the given amount of milliseconds, even
+	 * if it is event-driven. Components can use this for animations or blinking. This method can be called
+	 * from any thread.
+	 * @param delayMillis The number of milliseconds to wait before the next iteration
+	 */
+	public void requestWakeUp(long delayMillis) {
+		long time = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		synchronized (wakeLock) {
+			if (time < wakeUpTime) {
+				wakeUpTime = time;
+				wakeLock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Determines whether the run loop should keep ticking at the fixed rate, even if it is event-driven.
+	 * @return true if the window renders continuously or if a key or mouse button is held down
+	 */
+	protected boolean needsTicking() {
+		return renderContinuously || input.isAnyDown();
+	}
+	
+	/**
+	 * Waits until the next iteration of the run loop should start. If this window is event-driven and doesn't
+	 * need to tick, this method will wait until wakeUp() is called or a requested wake up time is reached.
+	 * This method will not return before the frame time since the start of the current iteration has passed.
+	 * @param startTime The value of System.nanoTime() at the start of the current iteration
+	 * @param frameTime The preferred time between the starts of 2 iterations, in nanoseconds
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	protected void awaitNextIteration(long startTime, long frameTime) throws InterruptedException {
+		synchronized (wakeLock) {
+			if (eventDriven && !needsTicking()) {
+				long currentTime = System.nanoTime();
+				while (!wakeUpRequested && !shouldStopRunning && currentTime < wakeUpTime) {
+					if (wakeUpTime == Long.MAX_VALUE) {
+						wakeLock.wait();
+					} else {
+						TimeUnit.NANOSECONDS.timedWait(wakeLock, wakeUpTime - currentTime);
+					}
+					currentTime = System.nanoTime();
+				}
+			}
+			wakeUpRequested = false;
+			if (wakeUpTime <= System.nanoTime()) {
+				wakeUpTime = Long.MAX_VALUE;
+			}
+		}
+		long sleepTime = startTime + frameTime - System.nanoTime();
+		if(sleepTime > 0){
+			long millis = sleepTime / 1000000;
+			Thread.sleep(millis, (int) (sleepTime - millis * 1000000));
+		}//if sleepTime smaller than 0, we are behind schedule
 	}
 	
 	/**
@@ -101,6 +275,7 @@ public abstract class GuiWindow {
 	}
 	
 	protected void setMainComponentState() {
+		markLayoutChange();
 		if (mainComponent != null) {
 			mainComponent.setState(state);
 			mainComponent.init();
@@ -115,6 +290,9 @@ public abstract class GuiWindow {
 	 */
 	public void setMainComponent(GuiComponent component){
 		mainComponent = component;
+		focusManager.clearFocus();
+		focusManager.invalidateFocusOrder();
+		markLayoutChange();
 		if(isOpen()){
 			mainComponent.setState(state);
 			mainComponent.init();
@@ -137,9 +315,25 @@ public abstract class GuiWindow {
 	}
 	
 	/**
-	 * Updates the main component of this window and the listener if this window has a listener.
+	 * Schedules the given task to be executed on the thread that updates this window, at the start of the
+	 * next call to update(). This method can be called from any thread.
+	 * @param task The task to execute
+	 */
+	public void runLater(Runnable task) {
+		tasks.add(task);
+		wakeUp();
+	}
+	
+	/**
+	 * Executes the tasks that were scheduled with runLater, and then updates the main component of this
+	 * window and the listener if this window has a listener.
 	 */
 	public void update() {
+		Runnable task = tasks.poll();
+		while (task != null) {
+			task.run();
+			task = tasks.poll();
+		}
 		if(listener == null || !listener.preUpdate()){
 			preUpdate();
 			mainComponent.update();
@@ -151,6 +345,85 @@ public abstract class GuiWindow {
 	
 	protected abstract void preUpdate();
 	
+	/**
+	 * Passes a click on to the window listener and the main component. Window implementations should call
+	 * this method when the user clicks somewhere on the window.
+	 * @param x The x-coordinate of the click, between 0 and 1
+	 * @param y The y-coordinate of the click, between 0 and 1
+	 * @param button The mouse button that was clicked
+	 */
+	protected void handleClick(float x, float y, int button) {
+		wakeUp();
+		if(listener == null || !listener.preClick(x, y, button)){
+			mainComponent.click(x, y, button);
+			if(listener != null)
+				listener.postClick(x, y, button);
+		}
+	}
+	
+	/**
+	 * Passes a scroll event on to the window listener and the main component.
+	 * @param amount The amount the user scrolled
+	 */
+	protected void handleScroll(float amount) {
+		wakeUp();
+		if(listener != null)
+			amount = listener.preScroll(amount);
+		if(amount != 0){
+			mainComponent.scroll(amount);
+			if(listener != null)
+				listener.postScroll(amount);
+		}
+	}
+	
+	/**
+	 * Passes a typed character on to the window listener and the focused component (or the main component
+	 * if the focused component doesn't consume it). The character should have been approved by the
+	 * CharacterFilter.
+	 * @param character The character that was typed
+	 */
+	protected void handleKeyPressed(char character) {
+		wakeUp();
+		if(listener == null || !listener.preKeyPressed(character)){
+			if(!focusManager.keyPressed(character))
+				mainComponent.keyPressed(character);
+			if(listener != null)
+				listener.postKeyPressed(character);
+		}
+	}
+	
+	/**
+	 * Passes a key press on to the window listener and the focused component (or the main component if the
+	 * focused component doesn't consume it) and marks the key as down.
+	 * @param keyCode The KeyCode of the key that was pressed
+	 */
+	protected void handleKeyPressed(int keyCode) {
+		wakeUp();
+		if(listener == null || !listener.preKeyPressed(keyCode)){
+			if(!focusManager.keyPressed(keyCode))
+				mainComponent.keyPressed(keyCode);
+			if(listener != null)
+				listener.postKeyPressed(keyCode);
+		}
+		input.setKeyDown(keyCode);
+	}
+	
+	/**
+	 * Passes a key release on to the window listener and the focused component (or the main component if
+	 * the focused component doesn't consume it) and marks the key as up.
+	 * @param keyCode The KeyCode of the key that was released
+	 */
+	protected void handleKeyReleased(int keyCode) {
+		wakeUp();
+		if(listener == null || !listener.preKeyReleased(keyCode)){
+			if(!focusManager.keyReleased(keyCode))
+				mainComponent.keyReleased(keyCode);
+			input.setKeyUp(keyCode);
+			if(listener != null)
+				listener.postKeyReleased(keyCode);
+		}
+	}
+	
 	protected abstract void postUpdate();
 	
 	/**
@@ -175,6 +448,10 @@ public abstract class GuiWindow {
 			listener.preClose();
 		state = null;
 		directClose();
+		synchronized(this) {
+			if(textTextureCache != null)
+				textTextureCache.shutdown();
+		}
 		if(listener != null)
 			listener.postClose();
 	}
@@ -184,6 +461,7 @@ public abstract class GuiWindow {
 	 */
 	public void stopRunning() {
 		shouldStopRunning = true;
+		wakeUp();
 	}
 	
 	protected abstract void directClose();
@@ -200,6 +478,27 @@ public abstract class GuiWindow {
 	 */
 	public abstract GuiTextureLoader getTextureLoader();
 	
+	/**
+	 * This method gives the TextTextureCache of this window. Components should use it to get the textures
+	 * of their text, so that components with the same text and properties can share their texture.
+	 * @return The TextTextureCache of this window
+	 */
+	public synchronized TextTextureCache getTextTextureCache() {
+		if (textTextureCache == null) {
+			textTextureCache = new TextTextureCache(getTextureLoader(), this::runLater);
+		}
+		return textTextureCache;
+	}
+	
+	/**
+	 * This method gives the FocusManager of this window. It keeps track of the component that has the
+	 * keyboard focus and gives key events directly to that component.
+	 * @return The FocusManager of this window
+	 */
+	public FocusManager getFocusManager() {
+		return focusManager;
+	}
+	
 	/**
 	 * This method gives the GuiRenderer that this window will use to render the main component.
 	 * @return The GuiRenderer of this window
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * The MIT License
+ *
+ * Copyright (c) 2018 knokko
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *  
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *******************************************************************************/
+package nl.knokko.gui.window;
+
+import java.awt.image.BufferedImage;
+
+import nl.knokko.gui.component.GuiComponent;
+import nl.knokko.gui.component.state.GuiComponentState;
+import nl.knokko.gui.component.state.HeadlessComponentState;
+import nl.knokko.gui.render.HeadlessGuiRenderer;
+import nl.knokko.gui.texture.loader.AWTTextureLoader;
+import nl.knokko.gui.texture.loader.GuiTextureLoader;
+import nl.knokko.gui.util.CharBuilder;
+import nl.knokko.gui.window.input.CharacterFilter;
+
+/**
+ * A GuiWindow that doesn't need a display. It renders its main component into a BufferedImage (see getImage())
+ * and receives its input from synthetic events rather than from a real mouse and keyboard. This window also
+ * works when java.awt.headless is true, so it can be used for screenshot tests and benchmarks on machines
+ * without a display.
+ * 
+ * The input methods of this window can be called from any thread. The events will be queued and handled at
+ * the start of the next call to update(), in the same order as they were queued.
+ * @author knokko
+ *
+ */
+public class HeadlessGuiWindow extends GuiWindow {
+	
+	public static final int DEFAULT_WIDTH = 800;
+	public static final int DEFAULT_HEIGHT = 600;
+	
+	private final AWTTextureLoader textureLoader;
+	private final HeadlessGuiRenderer guiRenderer;
+	private final CharBuilder charBuilder;
+	
+	/**
+	 * The size of the window when it is opened in full screen
+	 */
+	private final int screenWidth;
+	private final int screenHeight;
+	
+	private int width;
+	private int height;
+	
+	private float mouseX;
+	private float mouseY;
+	private float prevMouseX;
+	private float prevMouseY;
+	
+	/**
+	 * Creates a headless window that will get the given size when it is opened in full screen.
+	 * @param screenWidth The width of the 'screen' in pixels
+	 * @param screenHeight The height of the 'screen' in pixels
+	 */
+	public HeadlessGuiWindow(int screenWidth, int screenHeight) {
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		this.width = -1;
+		this.height = -1;
+		textureLoader = new AWTTextureLoader();
+		guiRenderer = new HeadlessGuiRenderer(screenWidth, screenHeight);
+		charBuilder = new CharBuilder(textureLoader);
+		mouseX = Float.NaN;
+		mouseY = Float.NaN;
+		prevMouseX = Float.NaN;
+		prevMouseY = Float.NaN;
+	}
+	
+	public HeadlessGuiWindow() {
+		this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+	}
+	
+	public HeadlessGuiWindow(GuiComponent mainComponent) {
+		this();
+		this.mainComponent = mainComponent;
+	}
+	
+	/**
+	 * @return The image that contains the result of the last render
+	 */
+	public BufferedImage getImage() {
+		return guiRenderer.getImage();
+	}
+	
+	/**
+	 * Queues an event that moves the mouse to the given location. The coordinates are relative to the window,
+	 * so (0,0) is the bottom-left corner and (1,1) is the top-right corner of the window.
+	 * @param x The new x-coordinate of the mouse
+	 * @param y The new y-coordinate of the mouse
+	 */
+	public void moveMouse(float x, float y) {
+		runLater(() -> {
+			float prevX = mouseX;
+			float prevY = mouseY;
+			mouseX = x;
+			mouseY = y;
+			handleMouseMove(prevX, prevY, x, y);
+		});
+	}
+	
+	/**
+	 * Queues an event that moves the mouse out of the window.
+	 */
+	public void removeMouse() {
+		moveMouse(Float.NaN, Float.NaN);
+	}
+	
+	/**
+	 * Queues an event that presses the given mouse button at the current location of the mouse.
+	 * @param button The MouseCode of the button
+	 */
+	public void pressMouse(int button) {
+		runLater(() -> input.setMouseDown(button));
+	}
+	
+	/**
+	 * Queues an event that releases the given mouse button. Just like the AWTGuiWindow, the main component
+	 * will be clicked when the mouse button is released. Nothing will be clicked if the mouse is outside
+	 * the window.
+	 * @param button The MouseCode of the button
+	 */
+	public void releaseMouse(int button) {
+		runLater(() -> {
+			if (!Float.isNaN(mouseX) && !Float.isNaN(mouseY)) {
+				handleClick(mouseX, mouseY, button);
+			}
+			input.setMouseUp(button);
+		});
+	}
+	
+	/**
+	 * Queues the events to move the mouse to the given location and click there with the given button.
+	 * @param x The x-coordinate to click at, between 0 and 1
+	 * @param y The y-coordinate to click at, between 0 and 1
+	 * @param button The MouseCode of the button to click with
+	 */
+	public void click(float x, float y, int button) {
+		moveMouse(x, y);
+		pressMouse(button);
+		releaseMouse(button);
+	}
+	
+	/**
+	 * Queues a scroll event.
+	 * @param amount The amount to scroll, positive to scroll up and negative to scroll down
+	 */
+	public void scroll(float amount) {
+		runLater(() -> handleScroll(amount));
+	}
+	
+	/**
+	 * Queues an event that types the given character. The character will be ignored if the CharacterFilter
+	 * doesn't approve it, just like in AWTGuiWindow. Note that this does not press any key, so use pressKey
+	 * and releaseKey as well if the key codes are needed.
+	 * @param character The character to type
+	 */
+	public void type(char character) {
+		runLater(() -> {
+			if (CharacterFilter.approve(character)) {
+				handleKeyPressed(character);
+			}
+		});
+	}
+	
+	/**
+	 * Queues events that type all characters of the given string.
+	 * @param text The characters to type
+	 */
+	public void type(String text) {
+		for (int index = 0; index < text.length(); index++) {
+			type(text.charAt(index));
+		}
+	}
+	
+	/**
+	 * Queues an event that presses the given key. The key will stay down until releaseKey is called.
+	 * @param keyCode The KeyCode of the key to press
+	 */
+	public void pressKey(int keyCode) {
+		runLater(() -> handleKeyPressed(keyCode));
+	}
+	
+	/**
+	 * Queues an event that releases the given key.
+	 * @param keyCode The KeyCode of the key to release
+	 */
+	public void releaseKey(int keyCode) {
+		runLater(() -> handleKeyReleased(keyCode));
+	}
+	
+	@Override
+	protected void preUpdate() {}
+
+	@Override
+	protected void postUpdate() {
+		prevMouseX = mouseX;
+		prevMouseY = mouseY;
+	}
+
+	@Override
+	protected void directRender() {
+		mainComponent.render(guiRenderer);
+		guiRenderer.maybeRenderNow();
+	}
+	
+	private void setSize(int width, int height) {
+		this.width = width;
+		this.height = height;
+		if (width != guiRenderer.getImage().getWidth() || height != guiRenderer.getImage().getHeight()) {
+			guiRenderer.setSize(width, height);
+		}
+	}
+
+	@Override
+	protected void directOpen(String title, int width, int height, boolean border) {
+		setSize(width, height);
+	}
+
+	@Override
+	protected void directOpen(String title, boolean border) {
+		setSize(screenWidth, screenHeight);
+	}
+
+	@Override
+	protected GuiComponentState createState() {
+		return new HeadlessComponentState(this);
+	}
+
+	@Override
+	protected void directClose() {
+		width = -1;
+		height = -1;
+	}
+
+	/**
+	 * Runs the update and render loop on the current thread until stopRunning() is called.
+	 */
+	@Override
+	public void run(int fps) {
+		int frameTime = 1000000000 / fps;
+		try {
+			while(!shouldStopRunning && isOpen()){
+				if(listener == null || !listener.preRunLoop()){
+					long startTime = System.nanoTime();
+					update();
+					render();
+					awaitNextIteration(startTime, frameTime);
+					if(listener != null)
+						listener.postRunLoop();
+				}
+			}
+		} catch(InterruptedException ex){
+			ex.printStackTrace();
+		}
+		if (isOpen()) {
+			close();
+		}
+	}
+
+	@Override
+	public GuiTextureLoader getTextureLoader() {
+		return textureLoader;
+	}
+
+	@Override
+	public HeadlessGuiRenderer getRenderer() {
+		return guiRenderer;
+	}
+
+	@Override
+	public CharBuilder getCharBuilder() {
+		return charBuilder;
+	}
+
+	@Override
+	public float getMouseX() {
+		return mouseX;
+	}
+
+	@Override
+	public float getMouseY() {
+		return mouseY;
+	}
+
+	@Override
+	public float getMouseDX() {
+		if (Float.isNaN(mouseX) || Float.isNaN(prevMouseX))
+			return 0;
+		return mouseX - prevMouseX;
+	}
+
+	@Override
+	public float getMouseDY() {
+		if (Float.isNaN(mouseY) || Float.isNaN(prevMouseY))
+			return 0;
+		return mouseY - prevMouseY;
+	}
+
+	@Override
+	public int getWindowPosX() {
+		return isOpen() ? 0 : -1;
+	}
+
+	@Override
+	public int getPosX() {
+		return isOpen() ? 0 : -1;
+	}
+
+	@Override
+	public int getWindowWidth() {
+		return width;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getWindowPosY() {
+		return isOpen() ? 0 : -1;
+	}
+
+	@Override
+	public int getPosY() {
+		return isOpen() ? 0 : -1;
+	}
+
+	@Override
+	public int getWindowHeight() {
+		return height;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+}
@@ -57,6 +57,19 @@ public class WindowInput {
 		return pressedMouseButtons[button];
 	}
 	
+	/**
+	 * @return true if at least 1 key or mouse button is currently down
+	 */
+	public boolean isAnyDown(){
+		for(boolean pressed : pressedKeys)
+			if(pressed)
+				return true;
+		for(boolean pressed : pressedMouseButtons)
+			if(pressed)
+				return true;
+		return false;
+	}
+	
 	public void setMouseDown(int button){
 		pressedMouseButtons[--button] = true;
 	}